@@ -0,0 +1,253 @@
+package com.wangz.component;
+
+import cn.hutool.core.util.IdUtil;
+import com.wangz.constant.RedisKeyConstant;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 分布式 ID 生成器
+ * <p>
+ * 格式与雪花算法一致：41 位毫秒时间戳 + 10 位 workerId + 12 位序号。
+ * workerId 启动时在 Redis 中租用（id_worker:{业务名}:{workerId}），每 1/3 租期续约一次，
+ * 本地记录租约到期时间，到期前没有续约成功则拒绝发号，避免与接手该 workerId 的实例重复。
+ * 序号再按线程拆成若干条带，每个条带用一个 AtomicLong 以 CAS 递增，发号不加锁；
+ * 某个条带 1 毫秒内的序号用完时借用下一毫秒。
+ * 由各服务在配置类中注册为 Bean。
+ */
+@Slf4j
+public class IdGenerator {
+
+    // 起始时间 2020-01-01 00:00:00（UTC+8）
+    private static final long EPOCH = 1577808000000L;
+    private static final int WORKER_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int MAX_WORKERS = 1 << WORKER_BITS;
+    private static final int MAX_STRIPES = 16;
+
+    // 续约，只续自己持有的租约
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) end return 0",
+            Long.class);
+    // 释放，只删除自己持有的租约
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) end return 0",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    // 业务名，不同业务的 workerId 相互独立
+    private final String name;
+    // 租期，单位毫秒
+    private final long leaseMillis;
+    private final int stripeBits;
+    private final long sequenceMask;
+    // 各条带的状态：(相对时间戳 << 序号位数) | 序号
+    private final AtomicLong[] stripes;
+    // 租约持有者标识
+    private final String token = IdUtil.fastSimpleUUID();
+
+    private ScheduledExecutorService scheduler;
+    private volatile int workerId = -1;
+    // 租约本地到期时间（毫秒级时间戳），按发起续约前的时间计算
+    private volatile long leaseExpireAt;
+
+    // 统计
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final LongAdder casRetries = new LongAdder();
+    private long lastGenerated;
+    private long lastStatAt = System.currentTimeMillis();
+    private volatile double perSecond;
+
+    /**
+     * @param redisTemplate
+     * @param name          业务名
+     * @param leaseSeconds  workerId 租期，单位秒
+     * @param stripes       序号条带数，取不小于它的 2 的幂，最多 16
+     */
+    public IdGenerator(StringRedisTemplate redisTemplate, String name, int leaseSeconds, int stripes) {
+        this.redisTemplate = redisTemplate;
+        this.name = name;
+        this.leaseMillis = TimeUnit.SECONDS.toMillis(Math.max(3, leaseSeconds));
+        int size = 1;
+        while (size < Math.min(Math.max(1, stripes), MAX_STRIPES)) {
+            size <<= 1;
+        }
+        this.stripeBits = Integer.numberOfTrailingZeros(size);
+        this.sequenceMask = (1L << (SEQUENCE_BITS - stripeBits)) - 1;
+        this.stripes = new AtomicLong[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * 租用 workerId 并开始定时续约
+     */
+    public void start() {
+        lease();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "id-generator-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = leaseMillis / 3;
+        scheduler.scheduleWithFixedDelay(this::tick, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止续约并释放 workerId
+     */
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        int current = workerId;
+        workerId = -1;
+        if (current >= 0) {
+            try {
+                redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(leaseKey(current)), token);
+            } catch (Exception e) {
+                log.warn("释放 workerId {} 失败，等待租约过期：{}", current, e.toString());
+            }
+        }
+    }
+
+    /**
+     * 生成 ID
+     *
+     * @return
+     */
+    public long nextId() {
+        int worker = workerId;
+        if (worker < 0 || System.currentTimeMillis() >= leaseExpireAt) {
+            throw new IllegalStateException("workerId 租约已失效，暂时无法生成 ID");
+        }
+        int stripe = (int) Thread.currentThread().getId() & (stripes.length - 1);
+        AtomicLong state = stripes[stripe];
+        int sequenceBits = SEQUENCE_BITS - stripeBits;
+        for (; ; ) {
+            long current = state.get();
+            long last = current >>> sequenceBits;
+            long now = System.currentTimeMillis() - EPOCH;
+            long next;
+            boolean borrowed = false;
+            if (now > last) {
+                next = now << sequenceBits;
+            } else if ((current & sequenceMask) < sequenceMask) {
+                // 同一毫秒或时钟回拨，在上次的时间戳上继续递增
+                next = current + 1;
+            } else {
+                next = (last + 1) << sequenceBits;
+                borrowed = true;
+            }
+            if (state.compareAndSet(current, next)) {
+                generated.increment();
+                if (borrowed) {
+                    exhausted.increment();
+                }
+                long timestamp = next >>> sequenceBits;
+                long sequence = ((long) stripe << sequenceBits) | (next & sequenceMask);
+                return (timestamp << (WORKER_BITS + SEQUENCE_BITS)) | ((long) worker << SEQUENCE_BITS) | sequence;
+            }
+            casRetries.increment();
+        }
+    }
+
+    /**
+     * 生成字符串形式的 ID
+     *
+     * @return
+     */
+    public String nextIdStr() {
+        return String.valueOf(nextId());
+    }
+
+    /**
+     * 发号统计
+     *
+     * @return
+     */
+    public Stats stats() {
+        return new Stats(workerId, generated.sum(), perSecond, exhausted.sum(), casRetries.sum());
+    }
+
+    /**
+     * 定时续约并统计发号速率
+     */
+    private void tick() {
+        long now = System.currentTimeMillis();
+        long total = generated.sum();
+        perSecond = (total - lastGenerated) * 1000.0 / Math.max(1, now - lastStatAt);
+        lastGenerated = total;
+        lastStatAt = now;
+        try {
+            int current = workerId;
+            Long renewed = current < 0 ? null : redisTemplate.execute(RENEW_SCRIPT,
+                    Collections.singletonList(leaseKey(current)), token, String.valueOf(leaseMillis));
+            if (renewed != null && renewed == 1) {
+                leaseExpireAt = now + leaseMillis;
+                return;
+            }
+            // 租约已丢失，换一个 workerId，旧的可能已被其它实例接手
+            log.warn("workerId {} 租约已丢失，重新租用", current);
+            workerId = -1;
+            lease();
+        } catch (Exception e) {
+            log.warn("workerId 续约失败，稍后重试：{}", e.toString());
+        }
+    }
+
+    /**
+     * 从随机位置开始租用一个空闲的 workerId
+     */
+    private void lease() {
+        int start = ThreadLocalRandom.current().nextInt(MAX_WORKERS);
+        for (int i = 0; i < MAX_WORKERS; i++) {
+            int candidate = (start + i) % MAX_WORKERS;
+            long now = System.currentTimeMillis();
+            Boolean leased = redisTemplate.opsForValue().setIfAbsent(leaseKey(candidate), token,
+                    leaseMillis, TimeUnit.MILLISECONDS);
+            if (Boolean.TRUE.equals(leased)) {
+                leaseExpireAt = now + leaseMillis;
+                workerId = candidate;
+                log.info("{} 租用 workerId {}", name, candidate);
+                return;
+            }
+        }
+        throw new IllegalStateException("没有可用的 workerId：" + name);
+    }
+
+    private String leaseKey(int worker) {
+        return RedisKeyConstant.id_worker.getKey() + name + ":" + worker;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+
+        // 当前 workerId，租约失效时为 -1
+        private final int workerId;
+        // 累计生成的 ID 数
+        private final long generated;
+        // 最近一个续约周期的发号速率（个/秒）
+        private final double perSecond;
+        // 某个条带 1 毫秒内序号用完、借用下一毫秒的次数
+        private final long exhausted;
+        // CAS 冲突重试次数
+        private final long casRetries;
+
+    }
+
+}
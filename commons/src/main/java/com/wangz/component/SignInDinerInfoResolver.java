@@ -0,0 +1,79 @@
+package com.wangz.component;
+
+import cn.hutool.core.bean.BeanUtil;
+import com.wangz.constant.ApiConstant;
+import com.wangz.exception.ParameterException;
+import com.wangz.model.domain.ResultInfo;
+import com.wangz.model.vo.SignInDinerInfo;
+import com.wangz.utils.AssertUtil;
+import com.wangz.utils.SignInDinerCodec;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.LinkedHashMap;
+
+/**
+ * 获取登录用户信息
+ * <p>
+ * 优先使用网关签发的登录用户请求头，验签失败或没有时再调用授权服务 user/me。
+ * 由 SignInDinerAutoConfiguration 注册为 Bean。
+ */
+public class SignInDinerInfoResolver {
+
+    private final RestTemplate restTemplate;
+    // 授权服务地址
+    private final String oauthServerName;
+    // 登录用户请求头签名密钥
+    private final String secret;
+
+    public SignInDinerInfoResolver(RestTemplate restTemplate, String oauthServerName, String secret) {
+        this.restTemplate = restTemplate;
+        this.oauthServerName = oauthServerName;
+        this.secret = secret;
+    }
+
+    /**
+     * 获取登录用户信息
+     *
+     * @param accessToken
+     * @return
+     */
+    public SignInDinerInfo resolve(String accessToken) {
+        // 网关已校验过 token 并传递了登录用户信息
+        SignInDinerInfo dinerInfo = SignInDinerCodec.decode(currentHeader(), secret);
+        if (dinerInfo != null && dinerInfo.getId() != null) {
+            return dinerInfo;
+        }
+        // 必须登录
+        AssertUtil.mustLogin(accessToken);
+        String url = oauthServerName + "user/me?access_token={accessToken}";
+        ResultInfo resultInfo = restTemplate.getForObject(url, ResultInfo.class, accessToken);
+        if (resultInfo.getCode() != ApiConstant.SUCCESS_CODE) {
+            throw new ParameterException(resultInfo.getCode(), resultInfo.getMessage());
+        }
+        // 这里的data是一个LinkedHashMap，SignInDinerInfo
+        dinerInfo = BeanUtil.fillBeanWithMap((LinkedHashMap) resultInfo.getData(),
+                new SignInDinerInfo(), false);
+        if (dinerInfo == null) {
+            throw new ParameterException(ApiConstant.NO_LOGIN_CODE, ApiConstant.NO_LOGIN_MESSAGE);
+        }
+        return dinerInfo;
+    }
+
+    /**
+     * 获取当前请求的登录用户请求头
+     *
+     * @return
+     */
+    private String currentHeader() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return null;
+        }
+        return ((ServletRequestAttributes) attributes).getRequest()
+                .getHeader(ApiConstant.SIGN_IN_DINER_HEADER);
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.wangz.config;
+
+import cn.hutool.core.util.StrUtil;
+import com.wangz.component.SignInDinerInfoResolver;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * 登录用户信息获取自动配置，配置了授权服务地址 service.name.ms-oauth-server 的服务生效
+ * <p>
+ * 签名密钥 secure.identity.secret 需与网关一致，不写在配置文件中，
+ * 通过环境变量 SECURE_IDENTITY_SECRET 或启动参数提供，没有配置时启动失败。
+ */
+@Configuration
+@ConditionalOnClass(RestTemplate.class)
+@ConditionalOnBean(RestTemplate.class)
+@ConditionalOnProperty(prefix = "service.name", name = "ms-oauth-server")
+public class SignInDinerAutoConfiguration {
+
+    /**
+     * 登录用户信息获取，优先使用网关传递的请求头
+     *
+     * @param restTemplate
+     * @param oauthServerName
+     * @param secret
+     * @return
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public SignInDinerInfoResolver signInDinerInfoResolver(RestTemplate restTemplate,
+                                                           @Value("${service.name.ms-oauth-server}") String oauthServerName,
+                                                           @Value("${secure.identity.secret:}") String secret) {
+        if (StrUtil.isBlank(secret)) {
+            throw new IllegalStateException("必须配置与网关一致的登录用户签名密钥 secure.identity.secret");
+        }
+        return new SignInDinerInfoResolver(restTemplate, oauthServerName, secret);
+    }
+
+}
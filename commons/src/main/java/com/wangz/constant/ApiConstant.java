@@ -16,4 +16,6 @@ public class ApiConstant {
     public static final String NO_LOGIN_MESSAGE = "Please login.";
     // 错误提示信息
     public static final String ERROR_MESSAGE = "Oops! Something was wrong.";
+    // 网关传递给下游服务的登录用户信息请求头
+    public static final String SIGN_IN_DINER_HEADER = "X-Sign-In-Diner";
 }
\ No newline at end of file
@@ -7,13 +7,23 @@ public enum RedisKeyConstant {
 
     verify_code("verify_code:", "验证码"),
     seckill_vouchers("seckill_vouchers:", "秒杀券的key"),
+    seckill_stock("seckill_stock:", "秒杀券分桶库存，后接 {b分桶号}:代金券 ID"),
+    seckill_stock_buckets("seckill:stock:buckets", "使用过的秒杀库存分桶数集合"),
+    seckill_buyers("seckill_buyers:", "已抢购秒杀券的食客集合，后接代金券 ID"),
+    seckill_orders("seckill:orders", "秒杀订单 Stream"),
+    seckill_vouchers_changed("seckill:vouchers:changed", "秒杀代金券状态变化的发布订阅频道"),
+    id_worker("id_worker:", "ID 生成器 workerId 租约，后接 业务名:workerId"),
     lock_key("lockby:", "分布式锁的key"),
     following("following:", "关注集合Key"),
     followers("followers:", "粉丝集合key"),
     following_feeds("following_feeds:", "我关注的好友的FeedsKey"),
     diner_points("diner:points", "diner用户的积分Key"),
+    diner_points_histogram("diner:points:histogram", "积分分布，key：积分区间 value：人数"),
+    points_events("points:events", "积分事件 Stream"),
+    points_credited("points:credited:", "已计入排行榜的积分事件"),
     restaurants("restaurants:", "餐厅的Key"),
     restaurant_new_reviews("restaurant:new:reviews:", "餐厅评论Key"),
+    token_revoked("token:revoked:", "已注销的 JWT，后接 jti"),
     ;
 
     private String key;
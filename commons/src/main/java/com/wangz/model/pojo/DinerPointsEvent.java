@@ -0,0 +1,14 @@
+package com.wangz.model.pojo;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class DinerPointsEvent extends DinerPoints {
+
+    @ApiModelProperty("事件ID，同一事件只计一次积分")
+    private String eventId;
+
+}
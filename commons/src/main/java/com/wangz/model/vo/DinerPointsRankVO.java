@@ -19,4 +19,10 @@ public class DinerPointsRankVO extends ShortDinerInfo {
     @ApiModelProperty(value = "是否是自己", example = "0=否，1=是")
     private int isMe;
 
+    @ApiModelProperty(value = "排名是否为估算值", example = "0=否，1=是")
+    private int approximate;
+
+    @ApiModelProperty(value = "排名位于前百分之几，未开启积分分布统计时为空", example = "12.5")
+    private Double topPercent;
+
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.wangz.utils;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.wangz.model.vo.SignInDinerInfo;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * 登录用户信息签名工具类
+ * <p>
+ * 格式：base64url(用户信息 JSON).base64url(HmacSHA256 签名)，
+ * 网关校验 token 后签发，下游服务验签后直接使用，不再调用 user/me。
+ */
+public class SignInDinerCodec {
+
+    // 过期时间字段
+    private static final String EXP = "exp";
+
+    /**
+     * 签发
+     *
+     * @param dinerInfo 登录用户信息
+     * @param expireAt  过期时间（毫秒级时间戳）
+     * @param secret    签名密钥
+     * @return
+     */
+    public static String encode(SignInDinerInfo dinerInfo, long expireAt, String secret) {
+        JSONObject claims = JSONUtil.parseObj(dinerInfo, true);
+        claims.set(EXP, expireAt);
+        String payload = Base64.encodeUrlSafe(claims.toString(), StandardCharsets.UTF_8);
+        return payload + "." + sign(payload, secret);
+    }
+
+    /**
+     * 验签并解析，签名不正确或已过期返回 null
+     *
+     * @param value  请求头中的值
+     * @param secret 签名密钥
+     * @return
+     */
+    public static SignInDinerInfo decode(String value, String secret) {
+        if (StrUtil.isBlank(value) || StrUtil.isBlank(secret)) {
+            return null;
+        }
+        int index = value.indexOf('.');
+        if (index < 1) {
+            return null;
+        }
+        String payload = value.substring(0, index);
+        String signature = value.substring(index + 1);
+        if (!MessageDigest.isEqual(sign(payload, secret).getBytes(StandardCharsets.UTF_8),
+                signature.getBytes(StandardCharsets.UTF_8))) {
+            return null;
+        }
+        JSONObject claims = JSONUtil.parseObj(Base64.decodeStr(payload, StandardCharsets.UTF_8));
+        Long exp = claims.getLong(EXP);
+        if (exp == null || exp <= System.currentTimeMillis()) {
+            return null;
+        }
+        return claims.toBean(SignInDinerInfo.class, true);
+    }
+
+    /**
+     * HmacSHA256 签名
+     *
+     * @param payload
+     * @param secret
+     * @return
+     */
+    private static String sign(String payload, String secret) {
+        byte[] digest = SecureUtil.hmacSha256(secret.getBytes(StandardCharsets.UTF_8))
+                .digest(payload.getBytes(StandardCharsets.UTF_8));
+        return Base64.encodeUrlSafe(digest);
+    }
+
+}
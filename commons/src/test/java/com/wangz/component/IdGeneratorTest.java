@@ -0,0 +1,123 @@
+package com.wangz.component;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class IdGeneratorTest {
+
+    // 条带数，每个条带 1 毫秒内只有 256 个序号，容易用完
+    private static final int STRIPES = 16;
+    // 线程数多于条带数，多个线程共用一个条带
+    private static final int THREADS = 32;
+    private static final int PER_THREAD = 20000;
+
+    private IdGenerator idGenerator;
+
+    @BeforeEach
+    void setUp() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        // 第一次租用 workerId 即成功
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .thenReturn(true);
+        idGenerator = new IdGenerator(redisTemplate, "test", 30, STRIPES);
+        idGenerator.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        idGenerator.stop();
+    }
+
+    // 多线程并发发号不重复，同一线程拿到的 ID 递增
+    @Test
+    void testNextIdUniqueUnderContention() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch ready = new CountDownLatch(THREADS);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<long[]>> futures = new ArrayList<>(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                long[] ids = new long[PER_THREAD];
+                ready.countDown();
+                go.await();
+                for (int i = 0; i < PER_THREAD; i++) {
+                    ids[i] = idGenerator.nextId();
+                }
+                return ids;
+            }));
+        }
+        ready.await();
+        go.countDown();
+
+        Set<Long> all = new HashSet<>(THREADS * PER_THREAD * 2);
+        for (Future<long[]> future : futures) {
+            long[] ids = future.get(60, TimeUnit.SECONDS);
+            for (int i = 0; i < ids.length; i++) {
+                assertTrue(ids[i] > 0);
+                if (i > 0) {
+                    assertTrue(ids[i] > ids[i - 1], "同一线程的 ID 应递增");
+                }
+                all.add(ids[i]);
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(THREADS * PER_THREAD, all.size(), "ID 不应重复");
+        assertEquals(THREADS * PER_THREAD, idGenerator.stats().getGenerated());
+    }
+
+    // 单线程连续发号直到某一毫秒内序号用完，借用下一毫秒后仍递增且不重复
+    @Test
+    void testNextIdBorrowsNextMillisecondWhenExhausted() {
+        Set<Long> all = new HashSet<>();
+        long last = 0;
+        // 每毫秒只有 256 个序号，紧凑循环很快就会用完，截止时间只用于防止死循环
+        long deadline = System.currentTimeMillis() + 10000;
+        while (idGenerator.stats().getExhausted() < 3 && System.currentTimeMillis() < deadline) {
+            long id = idGenerator.nextId();
+            assertTrue(id > last, "ID 应递增");
+            assertTrue(all.add(id), "ID 不应重复");
+            last = id;
+        }
+        assertTrue(idGenerator.stats().getExhausted() >= 3);
+        // 借用之后继续发号仍递增
+        for (int i = 0; i < 1000; i++) {
+            long id = idGenerator.nextId();
+            assertTrue(id > last);
+            assertTrue(all.add(id));
+            last = id;
+        }
+    }
+
+    // 租约失效后拒绝发号
+    @Test
+    void testNextIdRejectedWithoutLease() {
+        idGenerator.stop();
+        assertThrows(IllegalStateException.class, idGenerator::nextId);
+    }
+
+}
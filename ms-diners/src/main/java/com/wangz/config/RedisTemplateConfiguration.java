@@ -5,11 +5,15 @@ import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.util.List;
+
 @Configuration
 public class RedisTemplateConfiguration {
     /**
@@ -40,4 +44,13 @@ public class RedisTemplateConfiguration {
         return redisTemplate;
     }
 
-}
\ No newline at end of file
+    @Bean
+    public DefaultRedisScript<List> signScript() {
+        DefaultRedisScript<List> redisScript = new DefaultRedisScript<>();
+        // 签到检查、设置、维护连续签到计数器、写入积分事件一次完成
+        redisScript.setLocation(new ClassPathResource("sign.lua"));
+        redisScript.setResultType(List.class);
+        return redisScript;
+    }
+
+}
@@ -3,6 +3,7 @@ package com.wangz.controller;
 import com.wangz.model.domain.ResultInfo;
 import com.wangz.utils.ResultInfoUtil;
 import com.wangz.service.SignService;
+import com.wangz.vo.SignCalendarVO;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
@@ -60,4 +61,17 @@ public class SignController {
         return ResultInfoUtil.buildSuccess(request.getServletPath(), map);
     }
 
-}
\ No newline at end of file
+    /**
+     * 获取用户全年签到日历 默认当年
+     *
+     * @param access_token
+     * @param year
+     * @return
+     */
+    @GetMapping("calendar")
+    public ResultInfo getSignCalendar(String access_token, Integer year) {
+        SignCalendarVO calendar = signService.getSignCalendar(access_token, year);
+        return ResultInfoUtil.buildSuccess(request.getServletPath(), calendar);
+    }
+
+}
@@ -391,6 +391,40 @@ INSERT INTO `t_diners` VALUES (2, 'test', 'test', '13666666666', NULL, 'e10adc39
 INSERT INTO `t_diners` VALUES (3, 'test2', 'test2', '13666666667', NULL, 'e10adc3949ba59abbe56e057f20f883e', '/test2', 'ROLE_USER', 1, '2020-11-12 17:47:12', '2020-11-12 17:47:12');
 INSERT INTO `t_diners` VALUES (5, 'aaa', 'aaa', '12311112222', NULL, 'e10adc3949ba59abbe56e057f20f883e', '/aaa', 'ROLE_USER', 1, '2020-11-13 12:29:49', '2020-11-13 12:29:49');
 
+-- ----------------------------
+-- Table structure for t_diner_points_event
+-- ----------------------------
+DROP TABLE IF EXISTS `t_diner_points_event`;
+CREATE TABLE `t_diner_points_event`  (
+  `id` int(11) NOT NULL AUTO_INCREMENT,
+  `event_id` varchar(64) CHARACTER SET utf8 COLLATE utf8_general_ci NOT NULL COMMENT '积分事件ID，同一事件只入账一次',
+  `fk_diner_id` int(11) NULL DEFAULT NULL,
+  `points` int(11) NULL DEFAULT NULL COMMENT '积分',
+  `types` int(11) NULL DEFAULT NULL COMMENT '积分类型：0=签到，1=关注好友，2=添加Feed，3=添加商户评论',
+  `create_date` datetime(0) NULL DEFAULT NULL,
+  PRIMARY KEY (`id`) USING BTREE,
+  UNIQUE INDEX `uk_event_id`(`event_id`) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8 COLLATE = utf8_general_ci ROW_FORMAT = DYNAMIC;
+
+-- ----------------------------
+-- Table structure for t_diner_points_total
+-- ----------------------------
+DROP TABLE IF EXISTS `t_diner_points_total`;
+CREATE TABLE `t_diner_points_total`  (
+  `fk_diner_id` int(11) NOT NULL,
+  `total` int(11) NOT NULL DEFAULT 0 COMMENT '积分总数，随积分明细同一事务累加',
+  `update_date` datetime(0) NULL DEFAULT NULL,
+  PRIMARY KEY (`fk_diner_id`) USING BTREE,
+  INDEX `index_total`(`total`) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8 COLLATE = utf8_general_ci ROW_FORMAT = DYNAMIC;
+
+-- ----------------------------
+-- Rebuild t_diner_points_total from t_diner_points (停写后执行)
+-- ----------------------------
+-- TRUNCATE TABLE `t_diner_points_total`;
+-- INSERT INTO `t_diner_points_total` (fk_diner_id, total, update_date)
+--   SELECT fk_diner_id, SUM(points), now() FROM `t_diner_points` WHERE is_valid = 1 GROUP BY fk_diner_id;
+
 -- ----------------------------
 -- Table structure for t_feed
 -- ----------------------------
@@ -495,7 +529,9 @@ CREATE TABLE `t_seckill_vouchers`  (
   `is_valid` int(11) NULL DEFAULT NULL,
   `create_date` datetime(0) NULL DEFAULT NULL,
   `update_date` datetime(0) NULL DEFAULT NULL,
-  PRIMARY KEY (`id`) USING BTREE
+  PRIMARY KEY (`id`) USING BTREE,
+  INDEX `idx_voucher`(`fk_voucher_id`) USING BTREE,
+  INDEX `idx_start_time`(`start_time`) USING BTREE
 ) ENGINE = InnoDB CHARACTER SET = utf8 COLLATE = utf8_general_ci ROW_FORMAT = DYNAMIC;
 
 -- ----------------------------
@@ -530,12 +566,12 @@ CREATE TABLE `t_voucher`  (
 -- ----------------------------
 
 -- ----------------------------
--- Table structure for t_voucher_order
+-- Table structure for t_voucher_orders
 -- ----------------------------
-DROP TABLE IF EXISTS `t_voucher_order`;
-CREATE TABLE `t_voucher_order`  (
+DROP TABLE IF EXISTS `t_voucher_orders`;
+CREATE TABLE `t_voucher_orders`  (
   `id` int(11) NOT NULL AUTO_INCREMENT,
-  `order_no` int(11) NULL DEFAULT NULL,
+  `order_no` varchar(32) CHARACTER SET utf8 COLLATE utf8_general_ci NULL DEFAULT NULL COMMENT '订单编号，秒杀订单异步入库时据此去重',
   `fk_voucher_id` int(11) NULL DEFAULT NULL,
   `fk_diner_id` int(11) NULL DEFAULT NULL,
   `qrcode` varchar(255) CHARACTER SET utf8 COLLATE utf8_general_ci NULL DEFAULT NULL COMMENT '图片地址',
@@ -546,11 +582,13 @@ CREATE TABLE `t_voucher_order`  (
   `create_date` datetime(0) NULL DEFAULT NULL,
   `update_date` datetime(0) NULL DEFAULT NULL,
   `is_valid` int(11) NULL DEFAULT NULL,
-  PRIMARY KEY (`id`) USING BTREE
+  PRIMARY KEY (`id`) USING BTREE,
+  UNIQUE INDEX `uk_order_no`(`order_no`) USING BTREE,
+  INDEX `idx_diner_voucher`(`fk_diner_id`, `fk_voucher_id`) USING BTREE
 ) ENGINE = InnoDB CHARACTER SET = utf8 COLLATE = utf8_general_ci ROW_FORMAT = DYNAMIC;
 
 -- ----------------------------
--- Records of t_voucher_order
+-- Records of t_voucher_orders
 -- ----------------------------
 
 SET FOREIGN_KEY_CHECKS = 1;
@@ -1,41 +1,44 @@
 package com.wangz.service;
 
 
-import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.codec.Base64;
 import cn.hutool.core.date.DateUtil;
 import cn.hutool.core.date.LocalDateTimeUtil;
 import cn.hutool.core.util.StrUtil;
-import com.wangz.constant.ApiConstant;
+import com.wangz.component.SignInDinerInfoResolver;
 import com.wangz.constant.PointTypesConstant;
+import com.wangz.constant.RedisKeyConstant;
 import com.wangz.exception.ParameterException;
-import com.wangz.model.domain.ResultInfo;
 import com.wangz.model.vo.SignInDinerInfo;
 import com.wangz.utils.AssertUtil;
-import org.springframework.beans.factory.annotation.Value;
+import com.wangz.vo.SignCalendarVO;
 import org.springframework.data.redis.connection.BitFieldSubCommands;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.http.*;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
-import org.springframework.web.client.RestTemplate;
 
 import javax.annotation.Resource;
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
 import java.util.*;
 
 @Service
 public class SignService {
 
-    @Value("${service.name.ms-oauth-server}")
-    private String oauthServerName;
-    @Value("${service.name.ms-points-server}")
-    private String pointsServerName;
     @Resource
-    private RestTemplate restTemplate;
+    private SignInDinerInfoResolver signInDinerInfoResolver;
     @Resource
     private RedisTemplate redisTemplate;
+    @Resource
+    private DefaultRedisScript<List> signScript;
+    // 签到脚本参数：使用连续签到计数器
+    private static final int STREAK_FROM_COUNTER = -1;
+    // 签到脚本返回：计数器未命中，需要统计连续签到天数
+    private static final long SIGN_RECOUNT = 0;
+    // 跨月统计连续签到时每次 pipeline 取的月数
+    private static final int STREAK_MONTH_BATCH = 12;
 
 
     /**
@@ -47,24 +50,20 @@ public class SignService {
      */
     public int doSign(String accessToken, String dateStr) {
         // 获取登录用户信息
-        SignInDinerInfo dinerInfo = loadSignInDinerInfo(accessToken);
+        SignInDinerInfo dinerInfo = signInDinerInfoResolver.resolve(accessToken);
         // 获取日期
         Date date = getDate(dateStr);
-        // 获取日期对应的天数，多少号
-        int offset = DateUtil.dayOfMonth(date) - 1; // 从 0 开始
-        // 构建 Key user:sign:5:yyyyMM
-        String signKey = buildSignKey(dinerInfo.getId(), date);
-        // 查看是否已签到
-        boolean isSigned = redisTemplate.opsForValue().getBit(signKey, offset);
-        AssertUtil.isTrue(isSigned, "当前日期已完成签到，无需再签");
-        // 签到
-        redisTemplate.opsForValue().setBit(signKey, offset, true);
-        // 统计连续签到的次数
-        int count = getContinuousSignCount(dinerInfo.getId(), date);
-        // 添加签到积分并返回
-        int points = addPoints(count, dinerInfo.getId());
-        return points;
+        // 签到并写入积分事件，计数器命中时一次 Redis 调用完成
+        List<Long> result = executeSign(dinerInfo.getId(), date, STREAK_FROM_COUNTER);
+        if (result.get(0) == SIGN_RECOUNT) {
+            // 计数器未命中，统计连续签到次数后再签到
+            int count = getContinuousSignCount(dinerInfo.getId(), date, result.get(1));
+            result = executeSign(dinerInfo.getId(), date, count);
+        }
+        // 返回获得的积分，积分由 ms-points 异步消费积分事件入账
+        return result.get(2).intValue();
     }
+
     /**
      * 获取用户签到次数
      *
@@ -74,7 +73,7 @@ public class SignService {
      */
     public long getSignCount(String accessToken, String dateStr) {
         // 获取登录用户信息
-        SignInDinerInfo dinerInfo = loadSignInDinerInfo(accessToken);
+        SignInDinerInfo dinerInfo = signInDinerInfoResolver.resolve(accessToken);
         // 获取日期
         Date date = getDate(dateStr);
         // 构建 Key
@@ -93,7 +92,7 @@ public class SignService {
      */
     public Map<String, Boolean> getSignInfo(String accessToken, String dateStr) {
         // 获取登录用户信息
-        SignInDinerInfo dinerInfo = loadSignInDinerInfo(accessToken);
+        SignInDinerInfo dinerInfo = signInDinerInfoResolver.resolve(accessToken);
         // 获取日期
         Date date = getDate(dateStr);
         // 构建 Key
@@ -126,74 +125,152 @@ public class SignService {
         return signInfo;
     }
     /**
-     * 统计连续签到的次数
+     * 获取全年签到日历，12 个月的位图一次 pipeline 取回
+     *
+     * @param accessToken
+     * @param year
+     * @return
+     */
+    public SignCalendarVO getSignCalendar(String accessToken, Integer year) {
+        // 获取登录用户信息
+        SignInDinerInfo dinerInfo = signInDinerInfoResolver.resolve(accessToken);
+        if (year == null) {
+            year = DateUtil.thisYear();
+        }
+        AssertUtil.isTrue(year < 1970 || year > 9999, "请传入正确的年份");
+        // 每月 1 号
+        List<Date> months = new ArrayList<>(12);
+        for (int month = 0; month < 12; month++) {
+            months.add(DateUtil.parseDate(String.format("%04d-%02d-01", year, month + 1)));
+        }
+        // bitfield user:sign:5:yyyyMM u{当月天数} 0
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) con -> {
+            for (Date month : months) {
+                con.bitField(buildSignKey(dinerInfo.getId(), month).getBytes(),
+                        BitFieldSubCommands.create()
+                                .get(BitFieldSubCommands.BitFieldType.unsigned(lengthOfMonth(month)))
+                                .valueAt(0));
+            }
+            return null;
+        });
+        List<String> bitsets = new ArrayList<>(12);
+        for (int i = 0; i < months.size(); i++) {
+            List<Long> list = (List<Long>) results.get(i);
+            long v = list == null || list.isEmpty() || list.get(0) == null ? 0 : list.get(0);
+            // 左对齐到 32 位，1 号在最高位
+            int word = (int) (v << (32 - lengthOfMonth(months.get(i))));
+            bitsets.add(Base64.encode(ByteBuffer.allocate(4).putInt(word).array()));
+        }
+        SignCalendarVO calendar = new SignCalendarVO();
+        calendar.setYear(year);
+        calendar.setMonths(bitsets);
+        return calendar;
+    }
+
+    /**
+     * 统计截止到 date 的连续签到次数，可以跨月
+     * <p>
+     * bitfield u{n} 0 的结果中 1 号在最高位、n 号在最低位，
+     * 低位连续 1 的个数即 Long.numberOfTrailingZeros(~v) 就是当月截止到 n 号的连续签到天数；
+     * 如果从 1 号起都签到了，再按批次用 pipeline 取之前月份的整月位图继续往前接。
      *
      * @param dinerId
      * @param date
+     * @param bits    当月 1 号到当天的签到位图
      * @return
      */
-    private int getContinuousSignCount(Integer dinerId, Date date) {
-        // 获取日期对应的天数，多少号，假设是 30
-        int dayOfMonth = DateUtil.dayOfMonth(date);
-        // 构建 Key
-        String signKey = buildSignKey(dinerId, date);
-        // bitfield user:sgin:5:202011 u30 0
-        BitFieldSubCommands bitFieldSubCommands = BitFieldSubCommands.create()
-                .get(BitFieldSubCommands.BitFieldType.unsigned(dayOfMonth))
-                .valueAt(0);
-        List<Long> list = redisTemplate.opsForValue().bitField(signKey, bitFieldSubCommands);
-        if (list == null || list.isEmpty()) {
-            return 0;
+    private int getContinuousSignCount(Integer dinerId, Date date, long bits) {
+        int signCount = Long.numberOfTrailingZeros(~bits);
+        if (signCount < DateUtil.dayOfMonth(date)) {
+            return signCount;
         }
-        int signCount = 0;
-        long v = list.get(0) == null ? 0 : list.get(0);
-        /**
-         * 高位							                    低位
-         * 1 1 1 1 1 1 0 1 0 0 1 0 1 1 1 0 0 1 0 1 1 1 1 0 0 0 0 0 0 0 0    -- 31号	 2,123,837,184
-         * 右移以后
-         * 0 1 1 1 1 1 1 0 1 0 0 1 0 1 1 1 0 0 1 0 1 1 1 1 0 0 0 0 0 0 0
-         * 然后再左移
-         * 1 1 1 1 1 1 0 1 0 0 1 0 1 1 1 0 0 1 0 1 1 1 1 0 0 0 0 0 0 0 0
-         * 结论：右移再左移如果等于自己，则表示未签到
-         *
-         *
-         * 1 1 1 1 1 1 0 1 0 0 1 0 1 1 1 0 0 1 0 1 1 1 1 0 0 0 0 0 0 0 1
-         * 右移以后
-         * 0 1 1 1 1 1 1 0 1 0 0 1 0 1 1 1 0 0 1 0 1 1 1 1 0 0 0 0 0 0 0
-         * 然后再左移
-         * 1 1 1 1 1 1 0 1 0 0 1 0 1 1 1 0 0 1 0 1 1 1 1 0 0 0 0 0 0 0 0
-         * 结论：右移再左移如果不等于自己，则表示已签到
-         *
-         *
-         * 1 1 1 1 1 1 0 1 0 0 1 0 1 1 1 0 0 1 0 1 1 1 1 0 0 0 0 0 0 0      -- 30号    1,061,918,592
-         *
-         * 1 1 1 1 1 1 0 1 0 0 1 0 1 1 1 0 0 1 0 1 1 1 1 0 0 0 0 0 0        -- 29号
-         *
-         * 1 1 1 1 1 1 0 1 0 0 1 0 1 1 1 0 0 1 0 1 1 1 1 0 0 0 0 0		 -- 28号
-         *
-         * 1 1 1 1 1 1 0 1 0 0 1 0 1 1 1 0 0 1 0 1 1 1 1 0 0 0 0 		 -- 27号
-         *
-         * 1 1 1 1 1 1 0 1 0 0 1 0 1 1 1 0 0 1 0 1 1 1 1 0 0 0 		       -- 26号
-         *
-         * 1 1 1 1 1 1 0 1 0 0 1 0 1 1 1 0 0 1 0 1 1 1 1 0 0 		       -- 25号
-         *
-         * 1 1 1 1 1 1 0 1 0 0 1 0 1 1 1 0 0 1 0 1 1 1 1 0 		            -- 24号
-         *
-         * 1 1 1 1 1 1 0 1 0 0 1 0 1 1 1 0 0 1 0 1 1 1 1			       -- 23号
-         */
-        for (int i = dayOfMonth; i > 0; i--) {// i 表示位移操作次数
-            // 右移再左移，如果等于自己说明最低位是 0，表示未签到
-            if (v >> 1 << 1 == v) {
-                // 低位 0 且非当天说明连续签到中断了
-                if (i != dayOfMonth) break;
-            } else {
-                signCount++;
+        for (int batch = 0; ; batch++) {
+            // 之前的 STREAK_MONTH_BATCH 个月
+            List<Date> months = new ArrayList<>(STREAK_MONTH_BATCH);
+            for (int i = 1; i <= STREAK_MONTH_BATCH; i++) {
+                months.add(DateUtil.offsetMonth(date, -(batch * STREAK_MONTH_BATCH + i)));
+            }
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) con -> {
+                for (Date month : months) {
+                    con.bitField(buildSignKey(dinerId, month).getBytes(),
+                            BitFieldSubCommands.create()
+                                    .get(BitFieldSubCommands.BitFieldType.unsigned(lengthOfMonth(month)))
+                                    .valueAt(0));
+                }
+                return null;
+            });
+            for (int i = 0; i < months.size(); i++) {
+                List<Long> list = (List<Long>) results.get(i);
+                long v = list == null || list.isEmpty() || list.get(0) == null ? 0 : list.get(0);
+                int ones = Long.numberOfTrailingZeros(~v);
+                signCount += ones;
+                // 这个月没有签满，连续签到到此中断
+                if (ones < lengthOfMonth(months.get(i))) {
+                    return signCount;
+                }
             }
-            // 右移一位并重新赋值，相当于把最低位丢弃一位
-            v >>= 1;
         }
-        return signCount;
     }
+
+    /**
+     * 执行签到脚本
+     *
+     * @param dinerId
+     * @param date
+     * @param count   连续签到天数，STREAK_FROM_COUNTER 表示使用计数器
+     * @return
+     */
+    private List<Long> executeSign(Integer dinerId, Date date, int count) {
+        int offset = DateUtil.dayOfMonth(date) - 1; // 从 0 开始
+        long epochDay = toEpochDay(date);
+        List<String> keys = Arrays.asList(buildSignKey(dinerId, date), buildStreakKey(dinerId),
+                RedisKeyConstant.points_events.getKey());
+        // 同一食客同一天只会签到一次，作为积分事件 ID 保证只入账一次
+        String eventId = String.format("sign:%d:%d", dinerId, epochDay);
+        // 参数按字符串传递，不经过 Jackson 序列化
+        RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+        List<Long> result = (List<Long>) redisTemplate.execute(signScript, serializer, serializer, keys,
+                String.valueOf(offset), String.valueOf(offset + 1), String.valueOf(epochDay),
+                String.valueOf(count), String.valueOf(dinerId), eventId,
+                String.valueOf(PointTypesConstant.sign.getType()),
+                // 签到1天送10积分，连续签到2天送20积分，3天送30积分，4天以上均送50积分
+                "10", "20", "30", "50");
+        AssertUtil.isTrue(result == null || result.isEmpty() || result.get(0) < 0,
+                "当前日期已完成签到，无需再签");
+        return result;
+    }
+
+    /**
+     * 构建连续签到计数器 Key -- user:sign:streak:5
+     *
+     * @param dinerId
+     * @return
+     */
+    private String buildStreakKey(Integer dinerId) {
+        return String.format("user:sign:streak:%d", dinerId);
+    }
+
+    /**
+     * 获取某月的总天数（考虑闰年）
+     *
+     * @param date
+     * @return
+     */
+    private int lengthOfMonth(Date date) {
+        return DateUtil.lengthOfMonth(DateUtil.month(date) + 1,
+                DateUtil.isLeapYear(DateUtil.year(date)));
+    }
+
+    /**
+     * 日期转为 epoch day
+     *
+     * @param date
+     * @return
+     */
+    private long toEpochDay(Date date) {
+        return LocalDateTimeUtil.of(date).toLocalDate().toEpochDay();
+    }
+
     /**
      * 构建 Key -- user:sign:5:yyyyMM
      *
@@ -222,64 +299,4 @@ public class SignService {
             throw new ParameterException("请传入yyyy-MM-dd的日期格式");
         }
     }
-
-    /**
-     * 获取登录用户信息
-     *
-     * @param accessToken
-     * @return
-     */
-    private SignInDinerInfo loadSignInDinerInfo(String accessToken) {
-        // 必须登录
-        AssertUtil.mustLogin(accessToken);
-        String url = oauthServerName + "user/me?access_token={accessToken}";
-        ResultInfo resultInfo = restTemplate.getForObject(url, ResultInfo.class, accessToken);
-        if (resultInfo.getCode() != ApiConstant.SUCCESS_CODE) {
-            throw new ParameterException(resultInfo.getCode(), resultInfo.getMessage());
-        }
-        SignInDinerInfo dinerInfo = BeanUtil.fillBeanWithMap((LinkedHashMap) resultInfo.getData(),
-                new SignInDinerInfo(), false);
-        if (dinerInfo == null) {
-            throw new ParameterException(ApiConstant.NO_LOGIN_CODE, ApiConstant.NO_LOGIN_MESSAGE);
-        }
-        return dinerInfo;
-    }
-    /**
-     * 添加用户积分
-     *
-     * @param count         连续签到次数
-     * @param signInDinerId 登录用户id
-     * @return 获取的积分
-     */
-    private int addPoints(int count, Integer signInDinerId) {
-        // 签到1天送10积分，连续签到2天送20积分，3天送30积分，4天以上均送50积分
-        int points = 10;
-        if (count == 2) {
-            points = 20;
-        } else if (count == 3) {
-            points = 30;
-        } else if (count >= 4) {
-            points = 50;
-        }
-        // 调用积分接口添加积分
-        // 构建请求头
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-        // 构建请求体（请求参数）
-        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-        body.add("dinerId", signInDinerId);
-        body.add("points", points);
-        body.add("types", PointTypesConstant.sign.getType());
-        HttpEntity<MultiValueMap<String, Object>> entity = new HttpEntity<>(body, headers);
-        // 发送请求
-        ResponseEntity<ResultInfo> result = restTemplate.postForEntity(pointsServerName,
-                entity, ResultInfo.class);
-        AssertUtil.isTrue(result.getStatusCode() != HttpStatus.OK, "登录失败！");
-        ResultInfo resultInfo = result.getBody();
-        if (resultInfo.getCode() != ApiConstant.SUCCESS_CODE) {
-            // 失败了, 事物要进行回滚
-            throw new ParameterException(resultInfo.getCode(), resultInfo.getMessage());
-        }
-        return points;
-    }
 }
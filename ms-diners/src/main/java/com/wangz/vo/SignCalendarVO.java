@@ -0,0 +1,21 @@
+package com.wangz.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Getter
+@Setter
+@ApiModel(value = "SignCalendarVO", description = "全年签到日历")
+public class SignCalendarVO implements Serializable {
+
+    @ApiModelProperty("年份")
+    private Integer year;
+    @ApiModelProperty("1~12 月的签到位图，每月 4 字节大端序的 Base64，最高位为 1 号，1 表示已签到")
+    private List<String> months;
+
+}
@@ -0,0 +1,42 @@
+-- 签到：检查并设置当天的 bit、维护连续签到计数器、写入积分事件，原子完成
+-- KEYS[1] 签到 key user:sign:{dinerId}:{yyyyMM}
+-- KEYS[2] 连续签到计数器 user:sign:streak:{dinerId}，hash：day=最后签到日(epoch day)，count=连续天数
+-- KEYS[3] 积分事件 Stream points:events
+-- ARGV[1] 当天的偏移量（从 0 开始）
+-- ARGV[2] 位图宽度，即当天是几号
+-- ARGV[3] 签到日期(epoch day)
+-- ARGV[4] 连续签到天数，-1 表示使用计数器
+-- ARGV[5] 食客 ID
+-- ARGV[6] 积分事件 ID
+-- ARGV[7] 积分类型
+-- ARGV[8]~ARGV[11] 连续签到 1、2、3、4 天及以上对应的积分
+-- 返回：已签到 {-1}；计数器未命中 {0, 1 号到当天的位图（含当天）}，调用方统计后带上天数重新调用；
+--      签到成功 {1, 连续签到天数, 积分}
+if (redis.call('getbit', KEYS[1], ARGV[1]) == 1) then
+    return {-1};
+end;
+local day = tonumber(ARGV[3]);
+local count = tonumber(ARGV[4]);
+local lastDay = tonumber(redis.call('hget', KEYS[2], 'day'));
+if (count < 0) then
+    -- 常见情况：昨天签过到，计数器直接加一
+    if (lastDay ~= nil and lastDay == day - 1) then
+        count = tonumber(redis.call('hget', KEYS[2], 'count')) + 1;
+    else
+        local bits = redis.call('bitfield', KEYS[1], 'get', 'u' .. ARGV[2], 0)[1];
+        -- 当天在最低位，尚未签到，加一即视为已签到
+        return {0, bits + 1};
+    end;
+end;
+redis.call('setbit', KEYS[1], ARGV[1], 1);
+if (lastDay ~= nil and lastDay > day) then
+    -- 补签了计数器之前的日期，可能把两段连续签到接起来，计数器失效
+    redis.call('del', KEYS[2]);
+else
+    redis.call('hset', KEYS[2], 'day', day, 'count', count);
+end;
+local points = ARGV[7 + math.min(count, 4)];
+-- 不按长度裁剪，避免裁掉还未入账的事件；已确认的事件由 ms-points 的 PointsEventDispatcher 裁剪
+redis.call('xadd', KEYS[3], '*',
+        'eventId', ARGV[6], 'dinerId', ARGV[5], 'points', points, 'types', ARGV[7]);
+return {1, count, tonumber(points)};
@@ -2,9 +2,9 @@ package com.wangz.service;
 
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.StrUtil;
+import com.wangz.component.SignInDinerInfoResolver;
 import com.wangz.constant.ApiConstant;
 import com.wangz.constant.RedisKeyConstant;
-import com.wangz.exception.ParameterException;
 import com.wangz.model.domain.ResultInfo;
 import com.wangz.model.pojo.Follow;
 import com.wangz.model.vo.ShortDinerInfo;
@@ -31,13 +31,13 @@ import java.util.stream.Collectors;
 @Service
 public class FollowService {
 
-    @Value("${service.name.ms-oauth-server}")
-    private String oauthServerName;
     @Value("${service.name.ms-diners-server}")
     private String dinersServerName;
     @Resource
     private RestTemplate restTemplate;
     @Resource
+    private SignInDinerInfoResolver signInDinerInfoResolver;
+    @Resource
     private FollowMapper followMapper;
     @Resource
     private RedisTemplate redisTemplate;
@@ -59,7 +59,7 @@ public class FollowService {
         AssertUtil.isTrue(followDinerId == null || followDinerId < 1,
                 "请选择要关注的人");
         // 获取登录用户信息 (封装方法)
-        SignInDinerInfo dinerInfo = loadSignInDinerInfo(accessToken);
+        SignInDinerInfo dinerInfo = signInDinerInfoResolver.resolve(accessToken);
         // 获取当前登录用户与需要关注用户的关注信息
         Follow follow = followMapper.selectFollow(dinerInfo.getId(), followDinerId);
 
@@ -140,7 +140,7 @@ public class FollowService {
         AssertUtil.isTrue(dinerId == null || dinerId < 1,
                 "请选择要查看的人");
         // 获取登录用户信息
-        SignInDinerInfo dinerInfo = loadSignInDinerInfo(accessToken);
+        SignInDinerInfo dinerInfo = signInDinerInfoResolver.resolve(accessToken);
         // 获取登录用户的关注信息
         String loginDinerKey = RedisKeyConstant.following.getKey() + dinerInfo.getId();
         // 获取登录用户查看对象的关注信息
@@ -167,24 +167,4 @@ public class FollowService {
         return ResultInfoUtil.buildSuccess(path, dinerInfos);
     }
 
-
-    /**
-     * 获取登录用户信息
-     *
-     * @param accessToken
-     * @return
-     */
-    private SignInDinerInfo loadSignInDinerInfo(String accessToken) {
-        // 必须登录
-        AssertUtil.mustLogin(accessToken);
-        String url = oauthServerName + "user/me?access_token={accessToken}";
-        ResultInfo resultInfo = restTemplate.getForObject(url, ResultInfo.class, accessToken);
-        if (resultInfo.getCode() != ApiConstant.SUCCESS_CODE) {
-            throw new ParameterException(resultInfo.getMessage());
-        }
-        SignInDinerInfo dinerInfo = BeanUtil.fillBeanWithMap((LinkedHashMap) resultInfo.getData(),
-                new SignInDinerInfo(), false);
-        return dinerInfo;
-    }
-
 }
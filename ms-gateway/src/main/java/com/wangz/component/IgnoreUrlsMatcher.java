@@ -0,0 +1,146 @@
+package com.wangz.component;
+
+import com.wangz.config.IgnoreUrlsConfig;
+import org.springframework.cloud.endpoint.event.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 网关白名单匹配
+ * <p>
+ * 启动时（以及配置刷新后）把白名单编译好：精确路径和以 /** 结尾的前缀路径放入字符前缀树，
+ * 匹配时按字符走一遍即可，不创建对象；其余带通配符的路径预先解析为 PathPattern。
+ */
+@Component
+public class IgnoreUrlsMatcher {
+
+    private static final String PREFIX_SUFFIX = "/**";
+
+    @Resource
+    private IgnoreUrlsConfig ignoreUrlsConfig;
+
+    // 编译后的白名单，配置刷新时整体替换
+    private volatile Compiled compiled = new Compiled(new Node(), Collections.emptyList());
+
+    @PostConstruct
+    public void init() {
+        compile();
+    }
+
+    /**
+     * 配置刷新后重新编译
+     *
+     * @param event
+     */
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void onRefresh(RefreshScopeRefreshedEvent event) {
+        compile();
+    }
+
+    /**
+     * 是否在白名单中
+     *
+     * @param path
+     * @return
+     */
+    public boolean matches(PathContainer path) {
+        Compiled current = compiled;
+        if (current.root.matches(path.value())) {
+            return true;
+        }
+        for (PathPattern pattern : current.patterns) {
+            if (pattern.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 编译白名单
+     */
+    private void compile() {
+        Node root = new Node();
+        List<PathPattern> patterns = new ArrayList<>();
+        PathPatternParser parser = new PathPatternParser();
+        List<String> urls = ignoreUrlsConfig.getUrls();
+        if (urls != null) {
+            for (String url : urls) {
+                String prefix = url.endsWith(PREFIX_SUFFIX)
+                        ? url.substring(0, url.length() - PREFIX_SUFFIX.length()) : url;
+                if (hasWildcard(prefix)) {
+                    patterns.add(parser.parse(url));
+                } else if (prefix.length() == url.length()) {
+                    root.insert(url).exact = true;
+                } else {
+                    root.insert(prefix).prefix = true;
+                }
+            }
+        }
+        compiled = new Compiled(root, patterns);
+    }
+
+    private boolean hasWildcard(String url) {
+        return url.indexOf('*') >= 0 || url.indexOf('?') >= 0 || url.indexOf('{') >= 0;
+    }
+
+    private static class Compiled {
+
+        private final Node root;
+        private final List<PathPattern> patterns;
+
+        Compiled(Node root, List<PathPattern> patterns) {
+            this.root = root;
+            this.patterns = patterns;
+        }
+
+    }
+
+    /**
+     * 前缀树节点
+     */
+    private static class Node {
+
+        private final Map<Character, Node> children = new HashMap<>();
+        // 精确匹配到此结束
+        private boolean exact;
+        // 前缀匹配：此路径本身或其下的任意路径
+        private boolean prefix;
+
+        Node insert(String path) {
+            Node node = this;
+            for (int i = 0; i < path.length(); i++) {
+                node = node.children.computeIfAbsent(path.charAt(i), c -> new Node());
+            }
+            return node;
+        }
+
+        boolean matches(String path) {
+            Node node = this;
+            for (int i = 0; i < path.length(); i++) {
+                char c = path.charAt(i);
+                if (node.prefix && c == '/') {
+                    return true;
+                }
+                node = node.children.get(c);
+                if (node == null) {
+                    return false;
+                }
+            }
+            return node.exact || node.prefix;
+        }
+
+    }
+
+}
@@ -0,0 +1,226 @@
+package com.wangz.component;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.wangz.config.TokenConfig;
+import com.wangz.constant.RedisKeyConstant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * JWT 本地校验
+ * <p>
+ * 公钥首次使用时从授权服务 /oauth/token_key 获取并缓存，
+ * 之后只做 RS256 验签和过期时间判断；验签失败时授权服务可能已更换密钥，按 keyRefreshInterval 限频重新获取公钥再验一次。
+ * 注销列表通过 reactive Redis 查询，Redis 异常时放行。
+ */
+@Slf4j
+@Component
+public class JwtTokenVerifier {
+
+    @Resource
+    private TokenConfig tokenConfig;
+    @Resource
+    private WebClient.Builder webClientBuilder;
+    @Resource
+    private ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    @Resource
+    private TokenCache tokenCache;
+
+    private WebClient webClient;
+    // 授权服务的公钥
+    private final AtomicReference<PublicKey> publicKey = new AtomicReference<>();
+    // 上次重新获取公钥的时间（毫秒级时间戳）
+    private final AtomicLong lastRefresh = new AtomicLong();
+    // 在途的重新获取公钥请求
+    private volatile Mono<PublicKey> refreshing;
+
+    @PostConstruct
+    public void init() {
+        webClient = webClientBuilder.build();
+    }
+
+    /**
+     * 是否由本地校验：JWT 模式且 token 为 header.payload.signature 格式
+     *
+     * @param accessToken
+     * @return
+     */
+    public boolean supports(String accessToken) {
+        return tokenConfig.isJwt() && StrUtil.count(accessToken, '.') == 2;
+    }
+
+    /**
+     * 校验 token
+     *
+     * @param accessToken
+     * @return
+     */
+    public Mono<TokenCache.Entry> verify(String accessToken) {
+        TokenCache.Entry cached = tokenCache.get(accessToken);
+        Mono<TokenCache.Entry> entry = cached != null ? Mono.just(cached)
+                : publicKey().flatMap(key -> verifySignature(accessToken, key));
+        return entry.flatMap(e -> e.isValid() ? checkRevoked(accessToken, e) : Mono.just(e));
+    }
+
+    /**
+     * 验签，签名不匹配时重新获取公钥后再验一次，仍不匹配时才判定无效
+     *
+     * @param accessToken
+     * @param key
+     * @return
+     */
+    private Mono<TokenCache.Entry> verifySignature(String accessToken, PublicKey key) {
+        TokenCache.Entry decoded = decode(accessToken, key);
+        if (decoded != null) {
+            return Mono.just(decoded);
+        }
+        return refreshPublicKey(key).map(fresh -> {
+            TokenCache.Entry retried = fresh == key ? null : decode(accessToken, fresh);
+            return retried != null ? retried : tokenCache.putInvalid(accessToken);
+        });
+    }
+
+    /**
+     * 验签并解析 claims
+     *
+     * @param accessToken
+     * @param key
+     * @return 签名与公钥不匹配时返回 null
+     */
+    private TokenCache.Entry decode(String accessToken, PublicKey key) {
+        try {
+            String[] parts = accessToken.split("\\.");
+            JSONObject header = JSONUtil.parseObj(Base64.decodeStr(parts[0], StandardCharsets.UTF_8));
+            if (!"RS256".equals(header.getStr("alg"))) {
+                return tokenCache.putInvalid(accessToken);
+            }
+            Signature signature = Signature.getInstance("SHA256withRSA");
+            signature.initVerify(key);
+            signature.update((parts[0] + "." + parts[1]).getBytes(StandardCharsets.US_ASCII));
+            if (!signature.verify(Base64.decode(parts[2]))) {
+                return null;
+            }
+            JSONObject claims = JSONUtil.parseObj(Base64.decodeStr(parts[1], StandardCharsets.UTF_8));
+            Long exp = claims.getLong("exp");
+            if (exp != null && exp * 1000 <= System.currentTimeMillis()) {
+                return tokenCache.putInvalid(accessToken);
+            }
+            return tokenCache.putValid(accessToken, exp, TokenValidator.toDinerInfo(claims), claims.getStr("jti"));
+        } catch (Exception e) {
+            log.debug("JWT 解析失败：{}", e.toString());
+            return tokenCache.putInvalid(accessToken);
+        }
+    }
+
+    /**
+     * 查询注销列表
+     *
+     * @param accessToken
+     * @param entry
+     * @return
+     */
+    private Mono<TokenCache.Entry> checkRevoked(String accessToken, TokenCache.Entry entry) {
+        if (entry.getJti() == null) {
+            return Mono.just(entry);
+        }
+        return reactiveStringRedisTemplate.hasKey(RedisKeyConstant.token_revoked.getKey() + entry.getJti())
+                .map(revoked -> revoked ? tokenCache.putInvalid(accessToken) : entry)
+                .onErrorResume(e -> {
+                    log.warn("查询 token 注销列表失败：{}", e.toString());
+                    return Mono.just(entry);
+                });
+    }
+
+    /**
+     * 获取公钥，获取成功后缓存
+     *
+     * @return
+     */
+    private Mono<PublicKey> publicKey() {
+        PublicKey key = publicKey.get();
+        if (key != null) {
+            return Mono.just(key);
+        }
+        return fetchPublicKey();
+    }
+
+    /**
+     * 重新获取公钥，距上次重新获取不足 keyRefreshInterval 秒时返回当前公钥，并发请求共享同一次获取
+     *
+     * @param stale 验签失败时使用的公钥
+     * @return
+     */
+    private Mono<PublicKey> refreshPublicKey(PublicKey stale) {
+        PublicKey current = publicKey.get();
+        if (current != null && current != stale) {
+            return Mono.just(current);
+        }
+        Mono<PublicKey> inFlight = refreshing;
+        if (inFlight != null) {
+            return inFlight;
+        }
+        long now = System.currentTimeMillis();
+        long last = lastRefresh.get();
+        if (now - last < TimeUnit.SECONDS.toMillis(tokenConfig.getKeyRefreshInterval())
+                || !lastRefresh.compareAndSet(last, now)) {
+            inFlight = refreshing;
+            return inFlight != null ? inFlight : Mono.just(stale);
+        }
+        Mono<PublicKey> fetch = fetchPublicKey()
+                .doOnNext(key -> log.info("已重新获取 JWT 公钥"))
+                .doFinally(signal -> refreshing = null)
+                .cache();
+        refreshing = fetch;
+        return fetch;
+    }
+
+    /**
+     * 从授权服务获取公钥并缓存
+     *
+     * @return
+     */
+    private Mono<PublicKey> fetchPublicKey() {
+        return webClient.get()
+                .uri(tokenConfig.getKeyUrl())
+                .retrieve()
+                .bodyToMono(Map.class)
+                .map(body -> parsePublicKey((String) body.get("value")))
+                .doOnNext(publicKey::set);
+    }
+
+    /**
+     * 解析 PEM 格式的 RSA 公钥
+     *
+     * @param pem
+     * @return
+     */
+    private PublicKey parsePublicKey(String pem) {
+        String content = pem.replace("-----BEGIN PUBLIC KEY-----", "")
+                .replace("-----END PUBLIC KEY-----", "")
+                .replaceAll("\\s", "");
+        try {
+            return KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(Base64.decode(content)));
+        } catch (Exception e) {
+            throw new IllegalStateException("JWT 公钥格式不正确", e);
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.wangz.component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.wangz.config.IdentityConfig;
+import com.wangz.config.TokenCacheConfig;
+import com.wangz.model.vo.SignInDinerInfo;
+import com.wangz.utils.SignInDinerCodec;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * token 校验结果本地缓存
+ * <p>
+ * 有效 token 最多缓存 ttl 秒，且不会超过 token 自身的过期时间 exp；
+ * 无效 token 缓存 negativeTtl 秒，避免同一个错误 token 反复打到授权服务。
+ * <p>
+ * Redis token 模式下注销只删除授权服务中的 token，网关感知不到：
+ * 已注销的 token 在缓存过期前仍会通过校验并签发登录用户信息，最多 ttl 秒，因此 ttl 只设几秒。
+ * JWT 模式缓存的是验签结果，每次请求仍会查询注销列表，不受 ttl 影响。
+ */
+@Component
+public class TokenCache {
+
+    @Resource
+    private TokenCacheConfig tokenCacheConfig;
+    @Resource
+    private IdentityConfig identityConfig;
+
+    private Cache<String, Entry> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(tokenCacheConfig.getMaxSize())
+                .expireAfterWrite(Math.max(tokenCacheConfig.getTtl(), tokenCacheConfig.getNegativeTtl()),
+                        TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 获取缓存的校验结果，不存在或已过期返回 null
+     *
+     * @param accessToken
+     * @return
+     */
+    public Entry get(String accessToken) {
+        Entry entry = cache.getIfPresent(accessToken);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.getExpireAt() <= System.currentTimeMillis()) {
+            cache.invalidate(accessToken);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * 缓存有效 token
+     *
+     * @param accessToken
+     * @param exp         token 过期时间（秒级时间戳），为空时只按 ttl 过期
+     * @param dinerInfo   登录用户信息，为空时不向下游传递
+     * @return
+     */
+    public Entry putValid(String accessToken, Long exp, SignInDinerInfo dinerInfo) {
+        return putValid(accessToken, exp, dinerInfo, null);
+    }
+
+    /**
+     * 缓存有效 token
+     *
+     * @param accessToken
+     * @param exp         token 过期时间（秒级时间戳），为空时只按 ttl 过期
+     * @param dinerInfo   登录用户信息，为空时不向下游传递
+     * @param jti         JWT 的 id，用于查询注销列表
+     * @return
+     */
+    public Entry putValid(String accessToken, Long exp, SignInDinerInfo dinerInfo, String jti) {
+        long expireAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(tokenCacheConfig.getTtl());
+        if (exp != null) {
+            expireAt = Math.min(expireAt, TimeUnit.SECONDS.toMillis(exp));
+        }
+        // 签名后的用户信息与缓存同时过期，每个 token 只签发一次
+        String identity = dinerInfo == null ? null
+                : SignInDinerCodec.encode(dinerInfo, expireAt, identityConfig.getSecret());
+        Entry entry = new Entry(true, expireAt, identity, jti);
+        if (expireAt > System.currentTimeMillis()) {
+            cache.put(accessToken, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * 缓存无效 token
+     *
+     * @param accessToken
+     * @return
+     */
+    public Entry putInvalid(String accessToken) {
+        long expireAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(tokenCacheConfig.getNegativeTtl());
+        Entry entry = new Entry(false, expireAt, null, null);
+        cache.put(accessToken, entry);
+        return entry;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+
+        // 是否有效
+        private final boolean valid;
+        // 缓存过期时间（毫秒级时间戳）
+        private final long expireAt;
+        // 签名后的登录用户信息，作为请求头传递给下游服务
+        private final String identity;
+        // JWT 的 id，非 JWT 为空
+        private final String jti;
+
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.wangz.component;
+
+import cn.hutool.core.collection.CollUtil;
+import com.wangz.config.TokenCheckConfig;
+import com.wangz.model.vo.SignInDinerInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreaker;
+import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreakerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 非阻塞 token 校验
+ * <p>
+ * 1. 先查本地缓存；
+ * 2. 同一个 token 同时只会有一个校验请求在途，其余请求共享结果；
+ * 3. 远程校验经过断路器，授权服务异常时快速失败，不占用 event-loop 线程。
+ */
+@Slf4j
+@Component
+public class TokenValidator {
+
+    @Resource
+    private WebClient.Builder webClientBuilder;
+    @Resource
+    private ReactiveCircuitBreakerFactory circuitBreakerFactory;
+    @Resource
+    private TokenCheckConfig tokenCheckConfig;
+    @Resource
+    private TokenCache tokenCache;
+    @Resource
+    private JwtTokenVerifier jwtTokenVerifier;
+
+    private WebClient webClient;
+    private ReactiveCircuitBreaker circuitBreaker;
+    // 在途的校验请求
+    private final Map<String, Mono<TokenCache.Entry>> inFlight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        webClient = webClientBuilder.build();
+        circuitBreaker = circuitBreakerFactory.create("ms-oauth2-server");
+    }
+
+    /**
+     * 校验 token，远程调用失败时返回 error，不做缓存
+     *
+     * @param accessToken
+     * @return
+     */
+    public Mono<TokenCache.Entry> validate(String accessToken) {
+        // JWT 模式本地校验，不访问授权服务
+        if (jwtTokenVerifier.supports(accessToken)) {
+            return jwtTokenVerifier.verify(accessToken);
+        }
+        TokenCache.Entry cached = tokenCache.get(accessToken);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return inFlight.computeIfAbsent(accessToken, token -> check(token)
+                .doFinally(signal -> inFlight.remove(token))
+                .cache());
+    }
+
+    /**
+     * 远程校验 token
+     *
+     * @param accessToken
+     * @return
+     */
+    private Mono<TokenCache.Entry> check(String accessToken) {
+        Mono<TokenCache.Entry> request = webClient.get()
+                .uri(tokenCheckConfig.getUrl(), accessToken)
+                .retrieve()
+                .bodyToMono(Map.class)
+                .map(body -> {
+                    Object exp = body.get("exp");
+                    return tokenCache.putValid(accessToken,
+                            exp instanceof Number ? ((Number) exp).longValue() : null, toDinerInfo(body));
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> tokenCache.putInvalid(accessToken)))
+                // 授权服务明确拒绝了该 token，做负缓存，不算作断路器的失败
+                .onErrorResume(WebClientResponseException.class, e -> e.getStatusCode().is4xxClientError()
+                        ? Mono.fromSupplier(() -> tokenCache.putInvalid(accessToken))
+                        : Mono.error(e));
+        return circuitBreaker.run(request, throwable -> {
+            log.warn("校验 token 失败：{}", throwable.toString());
+            return Mono.error(throwable);
+        });
+    }
+
+    /**
+     * 从 check_token 的返回结果或 JWT claims 中取出登录用户信息，没有用户 id 时返回 null
+     *
+     * @param body
+     * @return
+     */
+    static SignInDinerInfo toDinerInfo(Map body) {
+        Object id = body.get("id");
+        if (!(id instanceof Number)) {
+            return null;
+        }
+        SignInDinerInfo dinerInfo = new SignInDinerInfo();
+        dinerInfo.setId(((Number) id).intValue());
+        dinerInfo.setUsername((String) body.get("user_name"));
+        dinerInfo.setNickname((String) body.get("nickname"));
+        dinerInfo.setAvatarUrl((String) body.get("avatarUrl"));
+        Object roles = body.get("roles");
+        if (roles == null && body.get("authorities") instanceof Collection) {
+            roles = CollUtil.join((Collection) body.get("authorities"), ",");
+        }
+        dinerInfo.setRoles((String) roles);
+        return dinerInfo;
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.wangz.config;
+
+import cn.hutool.core.util.StrUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * 传递给下游服务的登录用户信息配置
+ * <p>
+ * 签名密钥不写在配置文件中，通过环境变量 SECURE_IDENTITY_SECRET 提供，没有配置时启动失败。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "secure.identity")
+public class IdentityConfig {
+
+    // 签名密钥，需与下游服务 secure.identity.secret 一致
+    private String secret;
+
+    @PostConstruct
+    public void check() {
+        if (StrUtil.isBlank(secret)) {
+            throw new IllegalStateException("必须配置与下游服务一致的登录用户签名密钥 secure.identity.secret");
+        }
+    }
+
+}
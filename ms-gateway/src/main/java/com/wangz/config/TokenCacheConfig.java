@@ -0,0 +1,25 @@
+package com.wangz.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 网关 token 校验结果缓存配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "secure.token-cache")
+public class TokenCacheConfig {
+
+    // 最多缓存的 token 数量
+    private long maxSize = 100000;
+
+    // 有效 token 的最长缓存时间，单位秒（不会超过 token 自身的 exp）；
+    // Redis token 模式下注销的 token 在网关最多还能通过这么久，因此只缓存几秒
+    private long ttl = 5;
+
+    // 无效 token 的缓存时间，单位秒
+    private long negativeTtl = 30;
+
+}
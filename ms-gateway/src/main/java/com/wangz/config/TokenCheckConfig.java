@@ -0,0 +1,30 @@
+package com.wangz.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 网关远程校验 token 配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "secure.token-check")
+public class TokenCheckConfig {
+
+    // 校验地址
+    private String url = "http://ms-oauth2-server/oauth/check_token?token={token}";
+
+    // 建立连接超时时间，单位毫秒
+    private int connectTimeout = 1000;
+
+    // 整个校验请求的超时时间，单位毫秒
+    private long timeout = 2000;
+
+    // 断路器打开的失败率阈值，百分比
+    private float failureRateThreshold = 50;
+
+    // 断路器打开后多久进入半开状态，单位秒
+    private long waitDurationInOpenState = 10;
+
+}
@@ -0,0 +1,33 @@
+package com.wangz.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * token 模式配置，需与授权服务 secure.token.mode 一致
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "secure.token")
+public class TokenConfig {
+
+    // token 模式：redis=远程 check_token，jwt=公钥本地校验
+    private String mode = "redis";
+
+    // 获取 JWT 公钥的地址
+    private String keyUrl = "http://ms-oauth2-server/oauth/token_key";
+
+    // 验签失败时重新获取公钥的最小间隔，单位秒
+    private long keyRefreshInterval = 30;
+
+    /**
+     * 是否为 JWT 模式
+     *
+     * @return
+     */
+    public boolean isJwt() {
+        return "jwt".equalsIgnoreCase(mode);
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.wangz.config;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.netty.channel.ChannelOption;
+import org.springframework.cloud.circuitbreaker.resilience4j.ReactiveResilience4JCircuitBreakerFactory;
+import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4JConfigBuilder;
+import org.springframework.cloud.client.circuitbreaker.Customizer;
+import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+
+import javax.annotation.Resource;
+import java.time.Duration;
+
+/**
+ * WebClient 配置类，网关内的远程调用都走非阻塞客户端
+ */
+@Configuration
+public class WebClientConfiguration {
+
+    @Resource
+    private TokenCheckConfig tokenCheckConfig;
+
+    @LoadBalanced
+    @Bean
+    public WebClient.Builder webClientBuilder() {
+        HttpClient httpClient = HttpClient.create()
+                .tcpConfiguration(client -> client.option(ChannelOption.CONNECT_TIMEOUT_MILLIS,
+                        tokenCheckConfig.getConnectTimeout()));
+        return WebClient.builder().clientConnector(new ReactorClientHttpConnector(httpClient));
+    }
+
+    /**
+     * 断路器默认配置：超时时间 + 失败率
+     *
+     * @return
+     */
+    @Bean
+    public Customizer<ReactiveResilience4JCircuitBreakerFactory> defaultCircuitBreakerCustomizer() {
+        return factory -> factory.configureDefault(id -> new Resilience4JConfigBuilder(id)
+                .timeLimiterConfig(TimeLimiterConfig.custom()
+                        .timeoutDuration(Duration.ofMillis(tokenCheckConfig.getTimeout()))
+                        .build())
+                .circuitBreakerConfig(CircuitBreakerConfig.custom()
+                        .failureRateThreshold(tokenCheckConfig.getFailureRateThreshold())
+                        .waitDurationInOpenState(Duration.ofSeconds(tokenCheckConfig.getWaitDurationInOpenState()))
+                        .build())
+                .build());
+    }
+
+}
@@ -1,20 +1,21 @@
 package com.wangz.filter;
 
 import com.wangz.component.HandleException;
-import com.wangz.config.IgnoreUrlsConfig;
+import com.wangz.component.IgnoreUrlsMatcher;
+import com.wangz.component.TokenCache;
+import com.wangz.component.TokenValidator;
+import com.wangz.constant.ApiConstant;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.core.Ordered;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.stereotype.Component;
-import org.springframework.util.AntPathMatcher;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
 import javax.annotation.Resource;
+import java.util.Optional;
 
 /**
  * 网关全局过滤器
@@ -23,33 +24,25 @@ import javax.annotation.Resource;
 public class AuthGlobalFilter implements GlobalFilter, Ordered {
 
     @Resource
-    private IgnoreUrlsConfig ignoreUrlsConfig;
-    @Resource
-    private RestTemplate restTemplate;
+    private IgnoreUrlsMatcher ignoreUrlsMatcher;
     @Resource
     private HandleException handleException;
+    @Resource
+    private TokenValidator tokenValidator;
 
     /**
      * 身份校验处理
      *
-     * @param exchange
+     * @param originalExchange
      * @param chain
      * @return
      */
     @Override
-    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
-        // 判断当前的请求是否在白名单中
-        AntPathMatcher pathMatcher = new AntPathMatcher();
-        boolean flag = false;
-        String path = exchange.getRequest().getURI().getPath();
-        for (String url : ignoreUrlsConfig.getUrls()) {
-            if (pathMatcher.match(url, path)) {
-                flag = true;
-                break;
-            }
-        }
+    public Mono<Void> filter(ServerWebExchange originalExchange, GatewayFilterChain chain) {
+        // 客户端传入的登录用户请求头一律丢弃，只认网关签发的
+        ServerWebExchange exchange = withIdentity(originalExchange, null);
         // 白名单放行
-        if (flag) {
+        if (ignoreUrlsMatcher.matches(exchange.getRequest().getPath().pathWithinApplication())) {
             return chain.filter(exchange);
         }
         // 获取 access_token
@@ -58,26 +51,45 @@ public class AuthGlobalFilter implements GlobalFilter, Ordered {
         if (StringUtils.isBlank(access_token)) {
             return handleException.writeError(exchange, "请登录");
         }
-        // 校验 token 是否有效
-        String checkTokenUrl = "http://ms-oauth2-server/oauth/check_token?token=".concat(access_token);
-        try {
-            // 发送远程请求，验证 token
-            ResponseEntity<String> entity = restTemplate.getForEntity(checkTokenUrl, String.class);
-            // token 无效的业务逻辑处理
-            if (entity.getStatusCode() != HttpStatus.OK) {
-                return handleException.writeError(exchange,
-                        "Token was not recognised, token: ".concat(access_token));
-            }
-            if (StringUtils.isBlank(entity.getBody())) {
-                return handleException.writeError(exchange,
-                        "This token is invalid: ".concat(access_token));
-            }
-        } catch (Exception e) {
-            return handleException.writeError(exchange,
-                    "Token was not recognised, token: ".concat(access_token));
+        // 非阻塞校验 token，校验结果接入过滤器链
+        return tokenValidator.validate(access_token)
+                .map(Optional::of)
+                // 授权服务不可用或断路器打开
+                .onErrorResume(e -> Mono.just(Optional.<TokenCache.Entry>empty()))
+                .flatMap(entry -> {
+                    if (!entry.isPresent()) {
+                        return handleException.writeError(exchange,
+                                "Token was not recognised, token: ".concat(access_token));
+                    }
+                    if (!entry.get().isValid()) {
+                        return handleException.writeError(exchange,
+                                "This token is invalid: ".concat(access_token));
+                    }
+                    // 放行，并把登录用户信息传递给下游服务
+                    return chain.filter(withIdentity(exchange, entry.get().getIdentity()));
+                });
+    }
+
+    /**
+     * 设置登录用户请求头，identity 为空时只移除
+     *
+     * @param exchange
+     * @param identity
+     * @return
+     */
+    private ServerWebExchange withIdentity(ServerWebExchange exchange, String identity) {
+        if (identity == null && !exchange.getRequest().getHeaders().containsKey(ApiConstant.SIGN_IN_DINER_HEADER)) {
+            return exchange;
         }
-        // 放行
-        return chain.filter(exchange);
+        ServerHttpRequest request = exchange.getRequest().mutate()
+                .headers(headers -> {
+                    headers.remove(ApiConstant.SIGN_IN_DINER_HEADER);
+                    if (identity != null) {
+                        headers.set(ApiConstant.SIGN_IN_DINER_HEADER, identity);
+                    }
+                })
+                .build();
+        return exchange.mutate().request(request).build();
     }
 
     /**
@@ -0,0 +1,107 @@
+package com.wangz.component;
+
+import com.wangz.constant.RedisKeyConstant;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.jwt.JwtHelper;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2RefreshToken;
+import org.springframework.security.oauth2.common.util.JsonParserFactory;
+import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.store.JwtTokenStore;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支持注销的 JwtTokenStore
+ * <p>
+ * JWT 本身无法作废，注销时把 jti 写入 Redis，过期时间与 token 一致；
+ * 读取 token 时先查注销列表。refresh token 通过 ati（所属 access token 的 jti）一并作废。
+ */
+public class RevocableJwtTokenStore extends JwtTokenStore {
+
+    private static final String JTI = "jti";
+    private static final String ATI = "ati";
+    private static final String EXP = "exp";
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    public RevocableJwtTokenStore(JwtAccessTokenConverter jwtTokenEnhancer,
+                                  StringRedisTemplate stringRedisTemplate) {
+        super(jwtTokenEnhancer);
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    @Override
+    public OAuth2AccessToken readAccessToken(String tokenValue) {
+        OAuth2AccessToken accessToken = super.readAccessToken(tokenValue);
+        if (accessToken == null || isRevoked(accessToken.getAdditionalInformation().get(JTI))) {
+            return null;
+        }
+        return accessToken;
+    }
+
+    @Override
+    public OAuth2RefreshToken readRefreshToken(String tokenValue) {
+        OAuth2RefreshToken refreshToken = super.readRefreshToken(tokenValue);
+        if (refreshToken == null) {
+            return null;
+        }
+        Map<String, Object> claims = decodeClaims(tokenValue);
+        if (isRevoked(claims.get(JTI)) || isRevoked(claims.get(ATI))) {
+            return null;
+        }
+        return refreshToken;
+    }
+
+    @Override
+    public void removeAccessToken(OAuth2AccessToken token) {
+        revoke(token.getAdditionalInformation().get(JTI), token.getExpiresIn());
+    }
+
+    @Override
+    public void removeRefreshToken(OAuth2RefreshToken token) {
+        Map<String, Object> claims = decodeClaims(token.getValue());
+        Object exp = claims.get(EXP);
+        if (exp instanceof Number) {
+            long expiresIn = ((Number) exp).longValue() - System.currentTimeMillis() / 1000;
+            revoke(claims.get(JTI), (int) expiresIn);
+        }
+    }
+
+    /**
+     * 写入注销列表
+     *
+     * @param jti
+     * @param expiresIn 剩余有效期，单位秒
+     */
+    private void revoke(Object jti, int expiresIn) {
+        if (jti == null || expiresIn <= 0) {
+            return;
+        }
+        stringRedisTemplate.opsForValue().set(RedisKeyConstant.token_revoked.getKey() + jti,
+                "1", expiresIn, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 是否已注销
+     *
+     * @param jti
+     * @return
+     */
+    private boolean isRevoked(Object jti) {
+        return jti != null && Boolean.TRUE.equals(
+                stringRedisTemplate.hasKey(RedisKeyConstant.token_revoked.getKey() + jti));
+    }
+
+    /**
+     * 解析 claims，调用前 token 已经过签名校验
+     *
+     * @param tokenValue
+     * @return
+     */
+    private Map<String, Object> decodeClaims(String tokenValue) {
+        return JsonParserFactory.create().parseMap(JwtHelper.decode(tokenValue).getClaims());
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.wangz.component;
+
+import com.wangz.model.domain.SignInIdentity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.provider.token.DefaultUserAuthenticationConverter;
+
+import java.util.Map;
+
+/**
+ * 从 JWT claims 中还原登录用户，user/me 等接口无需再查库
+ */
+public class SignInIdentityAuthenticationConverter extends DefaultUserAuthenticationConverter {
+
+    @Override
+    public Authentication extractAuthentication(Map<String, ?> map) {
+        if (!map.containsKey(USERNAME)) {
+            return null;
+        }
+        SignInIdentity signInIdentity = new SignInIdentity();
+        signInIdentity.setUsername((String) map.get(USERNAME));
+        Object id = map.get("id");
+        if (id instanceof Number) {
+            signInIdentity.setId(((Number) id).intValue());
+        }
+        signInIdentity.setNickname((String) map.get("nickname"));
+        signInIdentity.setAvatarUrl((String) map.get("avatarUrl"));
+        signInIdentity.setRoles((String) map.get("roles"));
+        // 签发时已校验过账号状态
+        signInIdentity.setIsValid(1);
+        return new UsernamePasswordAuthenticationToken(signInIdentity, "N/A",
+                signInIdentity.getAuthorities());
+    }
+
+}
@@ -2,6 +2,7 @@ package com.wangz.config;
 
 import com.wangz.model.domain.SignInIdentity;
 import com.wangz.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -11,9 +12,13 @@ import org.springframework.security.oauth2.config.annotation.web.configuration.A
 import org.springframework.security.oauth2.config.annotation.web.configuration.EnableAuthorizationServer;
 import org.springframework.security.oauth2.config.annotation.web.configurers.AuthorizationServerEndpointsConfigurer;
 import org.springframework.security.oauth2.config.annotation.web.configurers.AuthorizationServerSecurityConfigurer;
-import org.springframework.security.oauth2.provider.token.store.redis.RedisTokenStore;
+import org.springframework.security.oauth2.provider.token.TokenEnhancer;
+import org.springframework.security.oauth2.provider.token.TokenEnhancerChain;
+import org.springframework.security.oauth2.provider.token.TokenStore;
+import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
 
 import javax.annotation.Resource;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 
 /**
@@ -23,9 +28,12 @@ import java.util.LinkedHashMap;
 @EnableAuthorizationServer
 public class AuthorizationServerConfiguration extends AuthorizationServerConfigurerAdapter {
 
-    // RedisTokenSore
+    // token 存储：默认 RedisTokenStore，secure.token.mode=jwt 时为 JwtTokenStore
     @Resource
-    private RedisTokenStore redisTokenStore;
+    private TokenStore tokenStore;
+    // JWT 签名转换器，只在 jwt 模式下存在
+    @Autowired(required = false)
+    private JwtAccessTokenConverter jwtAccessTokenConverter;
     // 认证管理对象
     @Resource
     private AuthenticationManager authenticationManager;
@@ -78,22 +86,34 @@ public class AuthorizationServerConfiguration extends AuthorizationServerConfigu
      */
     @Override
     public void configure(AuthorizationServerEndpointsConfigurer endpoints) throws Exception {
+        // 令牌增强对象，增强返回的结果
+        TokenEnhancer tokenEnhancer = (accessToken, authentication) -> {
+            // 获取登录用户的信息，然后设置
+            SignInIdentity signInIdentity = (SignInIdentity) authentication.getPrincipal();
+            LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+            // 网关校验 token 时取出，传递给下游服务
+            map.put("id", signInIdentity.getId());
+            map.put("roles", signInIdentity.getRoles());
+            map.put("nickname", signInIdentity.getNickname());
+            map.put("avatarUrl", signInIdentity.getAvatarUrl());
+            DefaultOAuth2AccessToken token = (DefaultOAuth2AccessToken) accessToken;
+            token.setAdditionalInformation(map);
+            return token;
+        };
         // 认证器
         endpoints.authenticationManager(authenticationManager)
                 // 具体登录的方法逻辑 ，
                 .userDetailsService(userService)
-                // token 存储的方式：Redis
-                .tokenStore(redisTokenStore)
-        // 令牌增强对象，增强返回的结果
-                .tokenEnhancer((accessToken, authentication) -> {
-                    // 获取登录用户的信息，然后设置
-                    SignInIdentity signInIdentity = (SignInIdentity) authentication.getPrincipal();
-                    LinkedHashMap<String, Object> map = new LinkedHashMap<>();
-                    map.put("nickname", signInIdentity.getNickname());
-                    map.put("avatarUrl", signInIdentity.getAvatarUrl());
-                    DefaultOAuth2AccessToken token = (DefaultOAuth2AccessToken) accessToken;
-                    token.setAdditionalInformation(map);
-                    return token;
-                });
+                // token 存储的方式：Redis 或 JWT
+                .tokenStore(tokenStore);
+        if (jwtAccessTokenConverter == null) {
+            endpoints.tokenEnhancer(tokenEnhancer);
+            return;
+        }
+        // JWT 模式：先写入用户信息，再签名，用户信息作为 claims 随 token 下发
+        TokenEnhancerChain tokenEnhancerChain = new TokenEnhancerChain();
+        tokenEnhancerChain.setTokenEnhancers(Arrays.asList(tokenEnhancer, jwtAccessTokenConverter));
+        endpoints.tokenEnhancer(tokenEnhancerChain)
+                .accessTokenConverter(jwtAccessTokenConverter);
     }
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.wangz.config;
+
+import cn.hutool.core.util.StrUtil;
+import com.wangz.component.RevocableJwtTokenStore;
+import com.wangz.component.SignInIdentityAuthenticationConverter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.oauth2.provider.token.DefaultAccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.TokenStore;
+import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.store.KeyStoreKeyFactory;
+
+import javax.annotation.Resource;
+import java.security.KeyPair;
+
+/**
+ * JWT 模式配置类，secure.token.mode=jwt 时生效
+ * <p>
+ * token 使用 RSA 私钥签名，用户信息作为 claims 随 token 下发，
+ * 网关通过 /oauth/token_key 获取公钥后本地校验；Redis 只保存已注销 token 的 jti。
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "secure.token", name = "mode", havingValue = "jwt")
+public class JwtTokenConfiguration {
+
+    @Resource
+    private TokenConfig tokenConfig;
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    // JWT 签名转换器，解析时还原出 SignInIdentity
+    @Bean
+    public JwtAccessTokenConverter jwtAccessTokenConverter() {
+        DefaultAccessTokenConverter accessTokenConverter = new DefaultAccessTokenConverter();
+        accessTokenConverter.setUserTokenConverter(new SignInIdentityAuthenticationConverter());
+        JwtAccessTokenConverter converter = new JwtAccessTokenConverter();
+        converter.setKeyPair(keyPair());
+        converter.setAccessTokenConverter(accessTokenConverter);
+        return converter;
+    }
+
+    // 初始化 JwtTokenStore，注销时写入 Redis
+    @Bean
+    public TokenStore jwtTokenStore(JwtAccessTokenConverter jwtAccessTokenConverter) {
+        return new RevocableJwtTokenStore(jwtAccessTokenConverter, stringRedisTemplate);
+    }
+
+    /**
+     * 获取签名密钥对，多个授权服务实例、重启前后必须使用同一个密钥库，否则网关无法验签
+     *
+     * @return
+     */
+    private KeyPair keyPair() {
+        if (StrUtil.isBlank(tokenConfig.getKeyStore())) {
+            throw new IllegalStateException("JWT 模式必须配置共享的密钥库 secure.token.key-store");
+        }
+        KeyStoreKeyFactory keyStoreKeyFactory = new KeyStoreKeyFactory(
+                new ClassPathResource(tokenConfig.getKeyStore()),
+                tokenConfig.getKeyStorePassword().toCharArray());
+        return keyStoreKeyFactory.getKeyPair(tokenConfig.getKeyAlias());
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.wangz.config;
 
 import cn.hutool.crypto.digest.DigestUtil;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
@@ -24,8 +25,9 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
     @Resource
     private RedisConnectionFactory redisConnectionFactory;
 
-    // 初始化 RedisTokenStore 用于将 token 存储至 Redis
+    // 初始化 RedisTokenStore 用于将 token 存储至 Redis，secure.token.mode=jwt 时见 JwtTokenConfiguration
     @Bean
+    @ConditionalOnProperty(prefix = "secure.token", name = "mode", havingValue = "redis", matchIfMissing = true)
     public RedisTokenStore redisTokenStore() {
         RedisTokenStore redisTokenStore = new RedisTokenStore(redisConnectionFactory);
         redisTokenStore.setPrefix("TOKEN:"); // 设置key的层级前缀，方便查询
@@ -0,0 +1,27 @@
+package com.wangz.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * token 模式配置类  配置文件中的 secure.token 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "secure.token")
+@Data
+public class TokenConfig {
+
+    // token 模式：redis=RedisTokenStore，jwt=自包含的签名 token
+    private String mode = "redis";
+
+    // JWT 签名密钥库，classpath 下的路径，jwt 模式必须配置，所有实例使用同一个
+    private String keyStore;
+
+    // 密钥库密码
+    private String keyStorePassword;
+
+    // 密钥别名
+    private String keyAlias;
+
+}
@@ -9,7 +9,7 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.common.OAuth2AccessToken;
 import org.springframework.security.oauth2.common.OAuth2RefreshToken;
-import org.springframework.security.oauth2.provider.token.store.redis.RedisTokenStore;
+import org.springframework.security.oauth2.provider.token.TokenStore;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -26,7 +26,7 @@ public class UserController {
     private HttpServletRequest request;
 
     @Resource
-    private RedisTokenStore redisTokenStore;
+    private TokenStore tokenStore;
 
     @GetMapping("user/me")
     public ResultInfo getCurrentUser(Authentication authentication) {
@@ -59,12 +59,14 @@ public class UserController {
         if (access_token.toLowerCase().contains("bearer ".toLowerCase())) {
             access_token = access_token.toLowerCase().replace("bearer ", "");
         }
-        // 清除 redis token 信息
-        OAuth2AccessToken oAuth2AccessToken = redisTokenStore.readAccessToken(access_token);
+        // 清除 redis token 信息，JWT 模式下写入注销列表
+        OAuth2AccessToken oAuth2AccessToken = tokenStore.readAccessToken(access_token);
         if (oAuth2AccessToken != null) {
-            redisTokenStore.removeAccessToken(oAuth2AccessToken);
+            tokenStore.removeAccessToken(oAuth2AccessToken);
             OAuth2RefreshToken refreshToken = oAuth2AccessToken.getRefreshToken();
-            redisTokenStore.removeRefreshToken(refreshToken);
+            if (refreshToken != null) {
+                tokenStore.removeRefreshToken(refreshToken);
+            }
         }
         return ResultInfoUtil.buildSuccess(request.getServletPath(), "退出成功");
     }
@@ -0,0 +1,186 @@
+package com.wangz.component;
+
+import com.wangz.config.PointsBatchConfig;
+import com.wangz.exception.ParameterException;
+import com.wangz.model.pojo.DinerPointsEvent;
+import com.wangz.service.DinerPointsBatchService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 积分攒批写入
+ * <p>
+ * 请求线程把积分放入有界队列后等待写入完成；写入线程攒够 batchSize 条或等待 flushInterval 后，
+ * 用一条多行 insert 和一次 Redis 调用写入整批。队列满时请求最多等待 offerTimeout，仍放不进去则直接失败。
+ * 数据库事务提交后即返回成功，之后再计入 Redis 排行榜；计入失败时由写入线程按 creditRetryInterval 重试，
+ * 已计入标记保证重试不会重复计入。等待超时时还在队列中的积分撤回，已取出的积分等待入库结果，不会返回失败后又入库。
+ */
+@Slf4j
+@Component
+public class DinerPointsBatchWriter {
+
+    @Resource
+    private PointsBatchConfig pointsBatchConfig;
+    @Resource
+    private DinerPointsBatchService dinerPointsBatchService;
+
+    private BlockingQueue<Pending> queue;
+    private volatile boolean running = true;
+    private Thread worker;
+    // 已入库、等待计入排行榜的积分，只由写入线程访问
+    private final List<DinerPointsEvent> uncredited = new ArrayList<>();
+    // 下次重试计入排行榜的时间（毫秒级时间戳）
+    private long nextCreditAt;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(pointsBatchConfig.getQueueCapacity());
+        worker = new Thread(this::run, "points-batch-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.join(pointsBatchConfig.getWriteTimeout());
+    }
+
+    /**
+     * 写入积分，写入完成后返回
+     *
+     * @param event
+     */
+    public void write(DinerPointsEvent event) {
+        Pending pending = new Pending(event);
+        try {
+            if (!queue.offer(pending, pointsBatchConfig.getOfferTimeout(), TimeUnit.MILLISECONDS)) {
+                throw new ParameterException("积分服务繁忙，请稍后再试");
+            }
+            try {
+                pending.future.get(pointsBatchConfig.getWriteTimeout(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // 还在队列中时撤回，已被写入线程取出时等待入库结果
+                if (queue.remove(pending)) {
+                    throw new ParameterException("积分写入超时，请稍后再试");
+                }
+                pending.future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ParameterException("积分写入被中断");
+        } catch (ExecutionException e) {
+            log.error("积分写入失败", e.getCause());
+            throw new ParameterException("积分写入失败，请稍后再试");
+        }
+    }
+
+    /**
+     * 写入线程：攒批并写入，停止时先写完队列中剩余的积分
+     */
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(pointsBatchConfig.getFlushInterval(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    credit();
+                    continue;
+                }
+                List<Pending> batch = new ArrayList<>(pointsBatchConfig.getBatchSize());
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + pointsBatchConfig.getFlushInterval();
+                while (batch.size() < pointsBatchConfig.getBatchSize()) {
+                    queue.drainTo(batch, pointsBatchConfig.getBatchSize() - batch.size());
+                    long wait = deadline - System.currentTimeMillis();
+                    if (batch.size() >= pointsBatchConfig.getBatchSize() || wait <= 0) {
+                        break;
+                    }
+                    Pending next = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        // 停止前再尝试一次
+        nextCreditAt = 0;
+        credit();
+        if (!uncredited.isEmpty()) {
+            log.error("停止时仍有 {} 条已入库的积分未计入排行榜", uncredited.size());
+        }
+    }
+
+    /**
+     * 写入一批积分
+     *
+     * @param batch
+     */
+    private void flush(List<Pending> batch) {
+        List<DinerPointsEvent> events = new ArrayList<>(batch.size());
+        batch.forEach(pending -> events.add(pending.event));
+        try {
+            dinerPointsBatchService.saveEvents(events);
+        } catch (Exception e) {
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+            return;
+        }
+        // 已入库即返回成功
+        batch.forEach(pending -> pending.future.complete(null));
+        uncredited.addAll(events);
+        credit();
+    }
+
+    /**
+     * 计入排行榜，每次最多 batchSize 条；失败时保留到下次重试，最多保留 queueCapacity 条
+     */
+    private void credit() {
+        if (uncredited.isEmpty() || System.currentTimeMillis() < nextCreditAt) {
+            return;
+        }
+        try {
+            while (!uncredited.isEmpty()) {
+                List<DinerPointsEvent> chunk = uncredited.subList(0,
+                        Math.min(pointsBatchConfig.getBatchSize(), uncredited.size()));
+                dinerPointsBatchService.creditRanking(new ArrayList<>(chunk));
+                chunk.clear();
+            }
+        } catch (Exception e) {
+            nextCreditAt = System.currentTimeMillis() + pointsBatchConfig.getCreditRetryInterval();
+            log.warn("积分计入排行榜失败，{} 条稍后重试：{}", uncredited.size(), e.toString());
+            int overflow = uncredited.size() - pointsBatchConfig.getQueueCapacity();
+            if (overflow > 0) {
+                log.error("待计入排行榜的积分过多，丢弃最早的 {} 条，需要从数据库重建排行榜", overflow);
+                uncredited.subList(0, overflow).clear();
+            }
+        }
+    }
+
+    private static class Pending {
+
+        private final DinerPointsEvent event;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Pending(DinerPointsEvent event) {
+            this.event = event;
+        }
+
+    }
+
+}
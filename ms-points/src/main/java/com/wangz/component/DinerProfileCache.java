@@ -0,0 +1,82 @@
+package com.wangz.component;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.util.StrUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.wangz.config.DinerProfileCacheConfig;
+import com.wangz.constant.ApiConstant;
+import com.wangz.exception.ParameterException;
+import com.wangz.model.domain.ResultInfo;
+import com.wangz.model.vo.ShortDinerInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 食客昵称头像本地缓存
+ * <p>
+ * 排行榜上的食客变化不频繁，命中缓存时不再调用 ms-diners 的 findByIds，
+ * 未命中的食客合并为一次调用批量查询。
+ */
+@Component
+public class DinerProfileCache {
+
+    @Resource
+    private RestTemplate restTemplate;
+    @Resource
+    private DinerProfileCacheConfig dinerProfileCacheConfig;
+    @Value("${service.name.ms-diners-server}")
+    private String dinersServerName;
+
+    private Cache<Integer, ShortDinerInfo> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(dinerProfileCacheConfig.getMaxSize())
+                .expireAfterWrite(dinerProfileCacheConfig.getTtl(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 批量获取食客信息，key：食客 ID value：食客信息，查不到的食客不在结果中
+     *
+     * @param dinerIds
+     * @param accessToken
+     * @return
+     */
+    public Map<Integer, ShortDinerInfo> getAll(Collection<Integer> dinerIds, String accessToken) {
+        Map<Integer, ShortDinerInfo> dinerInfos = new HashMap<>(cache.getAllPresent(dinerIds));
+        List<Integer> missIds = new ArrayList<>();
+        for (Integer dinerId : dinerIds) {
+            if (!dinerInfos.containsKey(dinerId)) {
+                missIds.add(dinerId);
+            }
+        }
+        if (missIds.isEmpty()) {
+            return dinerInfos;
+        }
+        // 未命中的食客一次批量查询
+        ResultInfo resultInfo = restTemplate.getForObject(dinersServerName +
+                        "findByIds?access_token={accessToken}&ids={ids}",
+                ResultInfo.class, accessToken, StrUtil.join(",", missIds));
+        if (resultInfo.getCode() != ApiConstant.SUCCESS_CODE) {
+            throw new ParameterException(resultInfo.getCode(), resultInfo.getMessage());
+        }
+        List<LinkedHashMap> dinerInfoMaps = (List<LinkedHashMap>) resultInfo.getData();
+        for (LinkedHashMap dinerInfoMap : dinerInfoMaps) {
+            ShortDinerInfo shortDinerInfo = BeanUtil.fillBeanWithMap(dinerInfoMap,
+                    new ShortDinerInfo(), false);
+            cache.put(shortDinerInfo.getId(), shortDinerInfo);
+            dinerInfos.put(shortDinerInfo.getId(), shortDinerInfo);
+        }
+        return dinerInfos;
+    }
+
+}
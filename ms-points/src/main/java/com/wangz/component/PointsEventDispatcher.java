@@ -0,0 +1,309 @@
+package com.wangz.component;
+
+import com.wangz.config.PointsEventConfig;
+import com.wangz.constant.RedisKeyConstant;
+import com.wangz.model.pojo.DinerPointsEvent;
+import com.wangz.service.DinerPointsBatchService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisClusterConfiguration;
+import org.springframework.data.redis.connection.RedisSentinelConfiguration;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 积分事件消费
+ * <p>
+ * ms-diners 签到时与签到位图在同一个 Lua 脚本中写入 points:events，
+ * 这里以消费组的方式按批次读取，入库并计入排行榜后再 XACK；处理失败的事件留在待确认列表中重试。
+ * 消费者下线或改名后，它未确认的事件空闲超过 claimIdleMillis 后由其它消费者 XCLAIM 接手，
+ * 事件按 eventId 去重，重复处理不会重复加积分。
+ * 签到脚本不按长度裁剪 Stream，这里每 trimInterval 用 XTRIM MINID 裁剪最早的未确认事件之前的事件。
+ */
+@Slf4j
+@Component
+public class PointsEventDispatcher {
+
+    @Resource
+    private RedisProperties redisProperties;
+    @Resource
+    private PointsEventConfig pointsEventConfig;
+    @Resource
+    private DinerPointsBatchService dinerPointsBatchService;
+
+    // 积分事件 Stream 在 ms-diners 的 Redis 库中，单独建立连接
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate streamRedisTemplate;
+    private final DefaultRedisScript<Long> trimScript = new DefaultRedisScript<>();
+    private volatile boolean running = true;
+    private Thread worker;
+
+    @PostConstruct
+    public void start() {
+        connectionFactory = createConnectionFactory();
+        connectionFactory.afterPropertiesSet();
+        streamRedisTemplate = new StringRedisTemplate(connectionFactory);
+        trimScript.setLocation(new ClassPathResource("stream_trim.lua"));
+        trimScript.setResultType(Long.class);
+        createGroup();
+        worker = new Thread(this::dispatch, "points-event-dispatcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.join(pointsEventConfig.getBlockMillis() * 2);
+        connectionFactory.destroy();
+    }
+
+    /**
+     * 按 spring.redis 的配置（url、超时、SSL、哨兵、集群）建立连接，只把库换成积分事件所在的库；
+     * 只有一个消费线程，阻塞读取使用独立连接，不需要连接池
+     *
+     * @return
+     */
+    private LettuceConnectionFactory createConnectionFactory() {
+        LettuceClientConfiguration.LettuceClientConfigurationBuilder builder = LettuceClientConfiguration.builder();
+        if (redisProperties.getTimeout() != null) {
+            builder.commandTimeout(redisProperties.getTimeout());
+        }
+        Duration shutdownTimeout = redisProperties.getLettuce().getShutdownTimeout();
+        if (shutdownTimeout != null && !shutdownTimeout.isZero()) {
+            builder.shutdownTimeout(shutdownTimeout);
+        }
+        if (StringUtils.hasText(redisProperties.getClientName())) {
+            builder.clientName(redisProperties.getClientName());
+        }
+        boolean ssl = redisProperties.isSsl();
+        String host = redisProperties.getHost();
+        int port = redisProperties.getPort();
+        String password = redisProperties.getPassword();
+        if (StringUtils.hasText(redisProperties.getUrl())) {
+            // 与 Spring Boot 一致，url 优先于 host、port、password
+            URI uri = URI.create(redisProperties.getUrl());
+            ssl = "rediss".equals(uri.getScheme());
+            host = uri.getHost();
+            port = uri.getPort() > 0 ? uri.getPort() : 6379;
+            String userInfo = uri.getUserInfo();
+            if (userInfo != null) {
+                int index = userInfo.indexOf(':');
+                password = index >= 0 ? userInfo.substring(index + 1) : userInfo;
+            }
+        }
+        if (ssl) {
+            builder.useSsl();
+        }
+        LettuceClientConfiguration clientConfiguration = builder.build();
+
+        RedisProperties.Sentinel sentinel = redisProperties.getSentinel();
+        if (sentinel != null) {
+            RedisSentinelConfiguration configuration = new RedisSentinelConfiguration(sentinel.getMaster(),
+                    new HashSet<>(sentinel.getNodes()));
+            configuration.setPassword(password);
+            configuration.setSentinelPassword(sentinel.getPassword());
+            configuration.setDatabase(pointsEventConfig.getDatabase());
+            return new LettuceConnectionFactory(configuration, clientConfiguration);
+        }
+        RedisProperties.Cluster cluster = redisProperties.getCluster();
+        if (cluster != null) {
+            // 集群只有 0 号库，忽略 database
+            RedisClusterConfiguration configuration = new RedisClusterConfiguration(cluster.getNodes());
+            if (cluster.getMaxRedirects() != null) {
+                configuration.setMaxRedirects(cluster.getMaxRedirects());
+            }
+            configuration.setPassword(password);
+            return new LettuceConnectionFactory(configuration, clientConfiguration);
+        }
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(host, port);
+        configuration.setPassword(password);
+        configuration.setDatabase(pointsEventConfig.getDatabase());
+        return new LettuceConnectionFactory(configuration, clientConfiguration);
+    }
+
+    /**
+     * 创建消费组，已存在时忽略
+     */
+    private void createGroup() {
+        try {
+            streamRedisTemplate.execute((RedisCallback<Object>) con -> con.execute("XGROUP",
+                    bytes("CREATE"), bytes(RedisKeyConstant.points_events.getKey()),
+                    bytes(pointsEventConfig.getGroup()), bytes("0"), bytes("MKSTREAM")));
+        } catch (Exception e) {
+            String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            if (message == null || !message.contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 循环消费，先处理本消费者未确认的事件，处理完再读新事件
+     */
+    private void dispatch() {
+        boolean pending = true;
+        long nextClaim = 0;
+        long nextTrim = System.currentTimeMillis() + pointsEventConfig.getTrimInterval();
+        while (running) {
+            try {
+                if (System.currentTimeMillis() >= nextClaim) {
+                    nextClaim = System.currentTimeMillis() + pointsEventConfig.getClaimInterval();
+                    reclaim();
+                }
+                if (System.currentTimeMillis() >= nextTrim) {
+                    nextTrim = System.currentTimeMillis() + pointsEventConfig.getTrimInterval();
+                    trim();
+                }
+                StreamOffset<String> offset = StreamOffset.create(RedisKeyConstant.points_events.getKey(),
+                        pending ? ReadOffset.from("0") : ReadOffset.lastConsumed());
+                List<MapRecord<String, Object, Object>> records = streamRedisTemplate.opsForStream().read(
+                        Consumer.from(pointsEventConfig.getGroup(), pointsEventConfig.getConsumer()),
+                        StreamReadOptions.empty()
+                                .count(pointsEventConfig.getBatchSize())
+                                .block(Duration.ofMillis(pointsEventConfig.getBlockMillis())),
+                        offset);
+                if (records == null || records.isEmpty()) {
+                    pending = false;
+                    continue;
+                }
+                handle(records);
+            } catch (Exception e) {
+                log.error("处理积分事件失败，稍后重试", e);
+                pending = true;
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 接手其它消费者空闲超过 claimIdleMillis 的未确认事件并处理
+     */
+    private void reclaim() {
+        String stream = RedisKeyConstant.points_events.getKey();
+        Duration minIdle = Duration.ofMillis(pointsEventConfig.getClaimIdleMillis());
+        String consumer = pointsEventConfig.getConsumer();
+        int count = pointsEventConfig.getBatchSize();
+        Range<String> range = Range.unbounded();
+        while (running) {
+            PendingMessages pending = streamRedisTemplate.opsForStream().pending(stream,
+                    pointsEventConfig.getGroup(), range, count);
+            List<RecordId> stale = new ArrayList<>();
+            String last = null;
+            for (PendingMessage message : pending) {
+                last = message.getIdAsString();
+                if (!consumer.equals(message.getConsumerName())
+                        && message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) >= 0) {
+                    stale.add(message.getId());
+                }
+            }
+            if (!stale.isEmpty()) {
+                List<MapRecord<String, Object, Object>> records = streamRedisTemplate.opsForStream().claim(stream,
+                        pointsEventConfig.getGroup(), consumer, minIdle, stale.toArray(new RecordId[0]));
+                if (!records.isEmpty()) {
+                    log.warn("接手其它消费者未确认的积分事件 {} 条", records.size());
+                    handle(records);
+                }
+            }
+            if (pending.size() < count) {
+                return;
+            }
+            range = Range.of(Range.Bound.exclusive(last), Range.Bound.unbounded());
+        }
+    }
+
+    /**
+     * 裁剪所有消费组都已确认的事件
+     */
+    private void trim() {
+        Long trimmed = streamRedisTemplate.execute(trimScript,
+                Collections.singletonList(RedisKeyConstant.points_events.getKey()));
+        if (trimmed != null && trimmed > 0) {
+            log.debug("裁剪已处理的积分事件 {} 条", trimmed);
+        }
+    }
+
+    /**
+     * 处理一批事件
+     *
+     * @param records
+     */
+    private void handle(List<MapRecord<String, Object, Object>> records) {
+        List<DinerPointsEvent> events = new ArrayList<>(records.size());
+        RecordId[] ids = new RecordId[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            MapRecord<String, Object, Object> record = records.get(i);
+            ids[i] = record.getId();
+            DinerPointsEvent event = toEvent(record.getValue());
+            if (event == null) {
+                log.warn("忽略格式不正确的积分事件：{} {}", record.getId(), record.getValue());
+                continue;
+            }
+            events.add(event);
+        }
+        if (!events.isEmpty()) {
+            dinerPointsBatchService.saveEvents(events);
+            dinerPointsBatchService.creditRanking(events);
+        }
+        streamRedisTemplate.opsForStream().acknowledge(RedisKeyConstant.points_events.getKey(),
+                pointsEventConfig.getGroup(), ids);
+    }
+
+    /**
+     * 解析事件
+     *
+     * @param value
+     * @return 格式不正确返回 null
+     */
+    private DinerPointsEvent toEvent(Map<Object, Object> value) {
+        try {
+            DinerPointsEvent event = new DinerPointsEvent();
+            event.setEventId((String) value.get("eventId"));
+            event.setFkDinerId(Integer.valueOf((String) value.get("dinerId")));
+            event.setPoints(Integer.valueOf((String) value.get("points")));
+            event.setTypes(Integer.valueOf((String) value.get("types")));
+            return event.getEventId() == null ? null : event;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
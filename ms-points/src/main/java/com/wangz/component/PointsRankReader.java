@@ -0,0 +1,326 @@
+package com.wangz.component;
+
+import com.wangz.config.PointsRankConfig;
+import com.wangz.constant.RedisKeyConstant;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * 读取 Redis 积分排行榜
+ * <p>
+ * 总榜可以按食客 ID 分片到多个 ZSET（diner:points:{分片号}），分片数为 1 时使用原来的 diner:points。
+ * 分片后前 N 名由各分片的前 N 名多路归并得到，个人排名为各分片中积分比自己高的人数之和 + 1。
+ * 修改分片数后需要重建总榜。
+ * 开启积分分布统计后，排名在 exactTop 之后的食客根据各积分区间的人数估算排名，不再访问排行榜；
+ * 积分分布、已计入标记与所在分片使用同一个 hash tag，集群模式下与分片位于同一个节点。
+ */
+@Component
+public class PointsRankReader {
+
+    @Resource
+    private PointsRankConfig pointsRankConfig;
+    @Resource
+    private RedisTemplate redisTemplate;
+
+    /**
+     * 食客积分所在的总榜 key
+     *
+     * @param dinerId
+     * @return
+     */
+    public String shardKey(Integer dinerId) {
+        int shards = pointsRankConfig.getShards();
+        if (shards <= 1) {
+            return RedisKeyConstant.diner_points.getKey();
+        }
+        return shardKeyAt(Math.floorMod(dinerId, shards));
+    }
+
+    /**
+     * 总榜的所有分片 key
+     *
+     * @return
+     */
+    public List<String> shardKeys() {
+        return rangeKeys(RedisKeyConstant.diner_points.getKey());
+    }
+
+    /**
+     * 分片的积分分布 key
+     *
+     * @param shardKey
+     * @return
+     */
+    public String histogramKey(String shardKey) {
+        return RedisKeyConstant.diner_points_histogram.getKey() + ":" + slotTag(shardKey);
+    }
+
+    /**
+     * 分片的已计入标记 key
+     *
+     * @param shardKey
+     * @param eventId
+     * @return
+     */
+    public String creditedKey(String shardKey, String eventId) {
+        return RedisKeyConstant.points_credited.getKey() + slotTag(shardKey) + ":" + eventId;
+    }
+
+    /**
+     * 读取排行榜前 N 名及个人排名
+     *
+     * @param key     排行榜 key，总榜 diner:points 在分片时读取所有分片
+     * @param top     前 N 名，为 0 时只查询个人排名
+     * @param dinerId 当前食客 ID
+     * @return
+     */
+    public Page read(String key, int top, Integer dinerId) {
+        boolean allTime = RedisKeyConstant.diner_points.getKey().equals(key);
+        List<String> rangeKeys = rangeKeys(key);
+        int ranges = top > 0 ? rangeKeys.size() : 0;
+        String myKey = allTime ? shardKey(dinerId) : key;
+        boolean histogram = allTime && pointsRankConfig.getHistogramBucket() > 0;
+        // 各分片前 N 名、个人积分、积分分布一次往返取回
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                ZSetOperations zSetOperations = operations.opsForZSet();
+                for (int i = 0; i < ranges; i++) {
+                    zSetOperations.reverseRangeWithScores(rangeKeys.get(i), 0, top - 1);
+                }
+                zSetOperations.score(myKey, dinerId);
+                if (histogram) {
+                    for (String rangeKey : rangeKeys) {
+                        operations.opsForHash().entries(histogramKey(rangeKey));
+                    }
+                }
+                return null;
+            }
+        });
+        List<ZSetOperations.TypedTuple<Integer>> merged = merge(results.subList(0, ranges), top);
+        Double myScore = (Double) results.get(ranges);
+        if (myScore == null) {
+            return new Page(merged, null, null, false, null);
+        }
+        // 积分分布估算排名，只需要读取各区间的人数
+        Long approximateRank = null;
+        Double topPercent = null;
+        if (histogram) {
+            long[] estimate = estimate(results.subList(ranges + 1, results.size()), myScore);
+            approximateRank = estimate[0];
+            // 保留两位小数
+            topPercent = Math.round(estimate[0] * 10000.0 / estimate[1]) / 100.0;
+        }
+        // 个人在前 N 名中时直接使用归并后的位置
+        for (int i = 0; i < merged.size(); i++) {
+            if (dinerId.equals(merged.get(i).getValue())) {
+                return new Page(merged, (long) i + 1, myScore, false, topPercent);
+            }
+        }
+        // 排名靠后的食客返回估算排名，不再访问排行榜
+        if (approximateRank != null && approximateRank > pointsRankConfig.getExactTop()) {
+            return new Page(merged, approximateRank, myScore, true, topPercent);
+        }
+        return new Page(merged, exactRank(rangeKeys, dinerId, myScore), myScore, false, topPercent);
+    }
+
+    /**
+     * 只读取排行榜前 N 名
+     *
+     * @param key 排行榜 key，总榜 diner:points 在分片时读取所有分片
+     * @param top 前 N 名
+     * @return
+     */
+    public List<ZSetOperations.TypedTuple<Integer>> readTop(String key, int top) {
+        List<String> rangeKeys = rangeKeys(key);
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                ZSetOperations zSetOperations = operations.opsForZSet();
+                for (String rangeKey : rangeKeys) {
+                    zSetOperations.reverseRangeWithScores(rangeKey, 0, top - 1);
+                }
+                return null;
+            }
+        });
+        return merge(results, top);
+    }
+
+    /**
+     * 排行榜实际存储的 key，总榜分片时为所有分片
+     *
+     * @param key
+     * @return
+     */
+    private List<String> rangeKeys(String key) {
+        List<String> rangeKeys = new ArrayList<>();
+        if (RedisKeyConstant.diner_points.getKey().equals(key) && pointsRankConfig.getShards() > 1) {
+            for (int i = 0; i < pointsRankConfig.getShards(); i++) {
+                rangeKeys.add(shardKeyAt(i));
+            }
+        } else {
+            rangeKeys.add(key);
+        }
+        return rangeKeys;
+    }
+
+    /**
+     * 查询准确排名，单个排行榜使用 ZREVRANK，分片时统计各分片中积分比自己高的人数
+     *
+     * @param rangeKeys
+     * @param dinerId
+     * @param myScore
+     * @return
+     */
+    private Long exactRank(List<String> rangeKeys, Integer dinerId, Double myScore) {
+        if (rangeKeys.size() == 1) {
+            Long myRank = redisTemplate.opsForZSet().reverseRank(rangeKeys.get(0), dinerId);
+            return myRank == null ? null : myRank + 1;// 排名从 0 开始
+        }
+        double min = Math.nextUp(myScore);
+        List<Object> counts = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                ZSetOperations zSetOperations = operations.opsForZSet();
+                for (String rangeKey : rangeKeys) {
+                    zSetOperations.count(rangeKey, min, Double.POSITIVE_INFINITY);
+                }
+                return null;
+            }
+        });
+        long higher = 0;
+        for (Object count : counts) {
+            higher += count == null ? 0 : (Long) count;
+        }
+        return higher + 1;
+    }
+
+    /**
+     * 根据积分分布估算排名：更高区间的人数 + 所在区间内按积分线性估算比自己高的人数 + 1
+     *
+     * @param histograms 各分片的积分分布，key：积分区间 value：人数
+     * @param myScore
+     * @return [估算排名, 总人数]
+     */
+    private long[] estimate(List<Object> histograms, double myScore) {
+        int width = pointsRankConfig.getHistogramBucket();
+        long myBucket = (long) Math.floor(myScore / width);
+        long higher = 0;
+        long inBucket = 0;
+        long total = 0;
+        for (Object histogram : histograms) {
+            if (histogram == null) {
+                continue;
+            }
+            for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) histogram).entrySet()) {
+                long bucket = Long.parseLong(entry.getKey().toString());
+                long count = Long.parseLong(entry.getValue().toString());
+                total += count;
+                if (bucket > myBucket) {
+                    higher += count;
+                } else if (bucket == myBucket) {
+                    inBucket += count;
+                }
+            }
+        }
+        // 区间内积分越接近上限，排在前面的人越少
+        double fraction = ((myBucket + 1) * width - 1 - myScore) / width;
+        fraction = Math.max(0, Math.min(1, fraction));
+        higher += Math.round(Math.max(0, inBucket - 1) * fraction);
+        return new long[]{higher + 1, Math.max(total, higher + 1)};
+    }
+
+    /**
+     * 多路归并各分片的前 N 名（各分片已按积分倒序）
+     *
+     * @param shardResults
+     * @param top
+     * @return
+     */
+    private List<ZSetOperations.TypedTuple<Integer>> merge(List<Object> shardResults, int top) {
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(shardResults.size(),
+                (a, b) -> Double.compare(b.current.getScore(), a.current.getScore()));
+        for (Object shardResult : shardResults) {
+            if (shardResult == null) {
+                continue;
+            }
+            Iterator<ZSetOperations.TypedTuple<Integer>> iterator =
+                    ((Set<ZSetOperations.TypedTuple<Integer>>) shardResult).iterator();
+            if (iterator.hasNext()) {
+                queue.add(new Cursor(iterator));
+            }
+        }
+        List<ZSetOperations.TypedTuple<Integer>> merged = new ArrayList<>(top);
+        while (merged.size() < top && !queue.isEmpty()) {
+            Cursor cursor = queue.poll();
+            merged.add(cursor.current);
+            if (cursor.iterator.hasNext()) {
+                cursor.current = cursor.iterator.next();
+                queue.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    private String shardKeyAt(int shard) {
+        return RedisKeyConstant.diner_points.getKey() + ":{" + shard + "}";
+    }
+
+    /**
+     * 分片的 hash tag，未分片时以 diner:points 整体作为 tag，与其 slot 相同
+     *
+     * @param shardKey
+     * @return
+     */
+    private String slotTag(String shardKey) {
+        int start = shardKey.indexOf('{');
+        return start >= 0 ? shardKey.substring(start) : "{" + shardKey + "}";
+    }
+
+    /**
+     * 归并时某个分片的读取位置
+     */
+    private static class Cursor {
+
+        private final Iterator<ZSetOperations.TypedTuple<Integer>> iterator;
+        private ZSetOperations.TypedTuple<Integer> current;
+
+        Cursor(Iterator<ZSetOperations.TypedTuple<Integer>> iterator) {
+            this.iterator = iterator;
+            this.current = iterator.next();
+        }
+
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Page {
+
+        // 前 N 名，按积分倒序
+        private final List<ZSetOperations.TypedTuple<Integer>> top;
+        // 个人排名，从 1 开始，不在排行榜中为空
+        private final Long myRank;
+        // 个人积分，不在排行榜中为空
+        private final Double myScore;
+        // 个人排名是否为估算值
+        private final boolean approximate;
+        // 个人排名位于前百分之几，未开启积分分布统计时为空
+        private final Double topPercent;
+
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.wangz.component;
+
+import com.wangz.config.PointsRankConfig;
+import com.wangz.constant.RedisKeyConstant;
+import com.wangz.utils.AssertUtil;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 分时段积分排行榜
+ * <p>
+ * 积分入账时同时计入当天、当周、当月的排行榜，各自按保留时间过期；
+ * 最近 N 天排行榜由 N 个日榜 ZUNIONSTORE 合并，合并结果短暂缓存。
+ */
+@Component
+public class PointsRankWindows {
+
+    // 总榜
+    public static final String ALL = "all";
+    // 日榜
+    public static final String DAY = "day";
+    // 周榜
+    public static final String WEEK = "week";
+    // 月榜
+    public static final String MONTH = "month";
+    // 最近 N 天，如 7d
+    private static final Pattern DAYS = Pattern.compile("^([1-9]\\d*)d$");
+
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+
+    @Resource
+    private PointsRankConfig pointsRankConfig;
+    @Resource
+    private RedisTemplate redisTemplate;
+
+    /**
+     * 积分入账时需要同时更新的日榜、周榜、月榜
+     *
+     * @param date
+     * @return
+     */
+    public List<String> creditKeys(LocalDate date) {
+        return Arrays.asList(dayKey(date), weekKey(date), monthKey(date));
+    }
+
+    /**
+     * 与 creditKeys 一一对应的过期时间，单位秒
+     *
+     * @return
+     */
+    public List<String> creditTtls() {
+        long day = TimeUnit.DAYS.toSeconds(1);
+        return Arrays.asList(
+                String.valueOf(day * (pointsRankConfig.getDayRetention() + 1)),
+                String.valueOf(day * 7 * (pointsRankConfig.getWeekRetention() + 1)),
+                String.valueOf(day * 31 * (pointsRankConfig.getMonthRetention() + 1)));
+    }
+
+    /**
+     * 根据时段获取排行榜的 key
+     *
+     * @param window all=总榜，day=日榜，week=周榜，month=月榜，Nd=最近 N 天
+     * @return
+     */
+    public String resolveKey(String window) {
+        LocalDate today = LocalDate.now();
+        if (window == null || ALL.equals(window)) {
+            return RedisKeyConstant.diner_points.getKey();
+        }
+        if (DAY.equals(window)) {
+            return dayKey(today);
+        }
+        if (WEEK.equals(window)) {
+            return weekKey(today);
+        }
+        if (MONTH.equals(window)) {
+            return monthKey(today);
+        }
+        Matcher matcher = DAYS.matcher(window);
+        AssertUtil.isTrue(!matcher.matches(), "排行榜时段不正确");
+        int days = Integer.parseInt(matcher.group(1));
+        AssertUtil.isTrue(days > pointsRankConfig.getDayRetention(),
+                "最多查询最近 " + pointsRankConfig.getDayRetention() + " 天的排行榜");
+        if (days == 1) {
+            return dayKey(today);
+        }
+        return unionDays(today, days);
+    }
+
+    /**
+     * 合并最近 N 天的日榜，合并结果缓存 unionTtl 秒
+     *
+     * @param today
+     * @param days
+     * @return
+     */
+    private String unionDays(LocalDate today, int days) {
+        String unionKey = windowKey("union:" + days + "d:" + DAY_FORMAT.format(today));
+        if (Boolean.TRUE.equals(redisTemplate.hasKey(unionKey))) {
+            return unionKey;
+        }
+        List<String> dayKeys = new ArrayList<>(days);
+        for (int i = 1; i < days; i++) {
+            dayKeys.add(dayKey(today.minusDays(i)));
+        }
+        // 并发合并结果相同，重复执行不影响正确性
+        redisTemplate.opsForZSet().unionAndStore(dayKey(today), dayKeys, unionKey);
+        redisTemplate.expire(unionKey, pointsRankConfig.getUnionTtl(), TimeUnit.SECONDS);
+        return unionKey;
+    }
+
+    private String dayKey(LocalDate date) {
+        return windowKey(DAY + ":" + DAY_FORMAT.format(date));
+    }
+
+    private String weekKey(LocalDate date) {
+        return windowKey(String.format("%s:%dW%02d", WEEK,
+                date.get(IsoFields.WEEK_BASED_YEAR), date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR)));
+    }
+
+    private String monthKey(LocalDate date) {
+        return windowKey(MONTH + ":" + MONTH_FORMAT.format(date));
+    }
+
+    private String windowKey(String suffix) {
+        return RedisKeyConstant.diner_points.getKey() + ":" + suffix;
+    }
+
+}
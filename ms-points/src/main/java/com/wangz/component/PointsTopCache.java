@@ -0,0 +1,188 @@
+package com.wangz.component;
+
+import com.wangz.config.PointsRankConfig;
+import com.wangz.constant.RedisKeyConstant;
+import com.wangz.model.vo.DinerPointsRankVO;
+import com.wangz.model.vo.ShortDinerInfo;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 总榜前 N 名本地快照
+ * <p>
+ * 快照包含排名、积分和昵称头像，生成后不再修改，刷新时整体替换；
+ * 每隔 snapshotRefresh 毫秒刷新一次，本实例入账后的积分达到第 N 名时立即刷新。
+ * 读取方需要修改时先复制一份。
+ */
+@Slf4j
+@Component
+public class PointsTopCache {
+
+    // 排行榜 TOPN
+    public static final int TOPN = 20;
+
+    @Resource
+    private PointsRankReader pointsRankReader;
+    @Resource
+    private DinerProfileCache dinerProfileCache;
+    @Resource
+    private PointsRankConfig pointsRankConfig;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    // 同时只有一个刷新任务
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "points-top-cache");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refresh, 0,
+                pointsRankConfig.getSnapshotRefresh(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 是否开启本地快照
+     *
+     * @return
+     */
+    public boolean isEnabled() {
+        return pointsRankConfig.getSnapshotRefresh() > 0;
+    }
+
+    /**
+     * 获取当前快照，还没有生成时返回 null
+     *
+     * @return
+     */
+    public Snapshot get() {
+        return snapshot.get();
+    }
+
+    /**
+     * 积分计入总榜后调用，积分达到第 N 名时立即刷新快照
+     *
+     * @param maxScore 本次入账后总榜中的最高新积分，没有入账时小于 0
+     */
+    public void onCredited(long maxScore) {
+        if (!isEnabled() || maxScore < 0) {
+            return;
+        }
+        Snapshot current = snapshot.get();
+        if ((current == null || current.isCrossedBy(maxScore)) && !scheduler.isShutdown()) {
+            scheduler.execute(this::refresh);
+        }
+    }
+
+    /**
+     * 根据排行榜构建 VO，key：食客 ID value：积分信息
+     *
+     * @param rangeWithScores 按积分倒序
+     * @param accessToken
+     * @return
+     */
+    public Map<Integer, DinerPointsRankVO> buildRanks(List<ZSetOperations.TypedTuple<Integer>> rangeWithScores,
+                                                      String accessToken) {
+        // 根据 key：食客 ID value：积分信息 构建一个 Map
+        Map<Integer, DinerPointsRankVO> ranksMap = new LinkedHashMap<>();
+        // 初始化排名
+        int rank = 1;
+        // 循环处理排行榜，添加排名信息
+        for (ZSetOperations.TypedTuple<Integer> rangeWithScore : rangeWithScores) {
+            DinerPointsRankVO dinerPointsRankVO = new DinerPointsRankVO();
+            dinerPointsRankVO.setId(rangeWithScore.getValue());
+            dinerPointsRankVO.setRanks(rank);
+            dinerPointsRankVO.setTotal(rangeWithScore.getScore().intValue());
+            ranksMap.put(rangeWithScore.getValue(), dinerPointsRankVO);
+            // 排名 +1
+            rank++;
+        }
+        if (ranksMap.isEmpty()) {
+            return ranksMap;
+        }
+        // 完善食客昵称和头像，优先使用本地缓存
+        Map<Integer, ShortDinerInfo> dinerInfos = dinerProfileCache.getAll(ranksMap.keySet(), accessToken);
+        for (DinerPointsRankVO rankVO : ranksMap.values()) {
+            ShortDinerInfo shortDinerInfo = dinerInfos.get(rankVO.getId());
+            if (shortDinerInfo != null) {
+                rankVO.setNickname(shortDinerInfo.getNickname());
+                rankVO.setAvatarUrl(shortDinerInfo.getAvatarUrl());
+            }
+        }
+        return ranksMap;
+    }
+
+    /**
+     * 重新读取总榜前 N 名并替换快照
+     */
+    private void refresh() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<ZSetOperations.TypedTuple<Integer>> top =
+                    pointsRankReader.readTop(RedisKeyConstant.diner_points.getKey(), TOPN);
+            snapshot.set(new Snapshot(buildRanks(top, null)));
+        } catch (Exception e) {
+            log.warn("刷新积分排行榜快照失败：{}", e.toString());
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    @Getter
+    public static class Snapshot {
+
+        // key：食客 ID value：积分信息，按排名排序，不可修改
+        private final Map<Integer, DinerPointsRankVO> ranks;
+        // 第 N 名的积分，不足 N 名时为 0
+        private final long minScore;
+
+        Snapshot(Map<Integer, DinerPointsRankVO> ranks) {
+            this.ranks = Collections.unmodifiableMap(ranks);
+            List<DinerPointsRankVO> values = new ArrayList<>(ranks.values());
+            this.minScore = values.size() < TOPN ? 0 : values.get(values.size() - 1).getTotal();
+        }
+
+        /**
+         * 积分是否能进入前 N 名
+         *
+         * @param score
+         * @return
+         */
+        boolean isCrossedBy(long score) {
+            return score >= minScore;
+        }
+
+    }
+
+}
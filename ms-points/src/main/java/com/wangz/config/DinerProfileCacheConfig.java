@@ -0,0 +1,21 @@
+package com.wangz.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 食客昵称头像本地缓存配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "points.profile-cache")
+public class DinerProfileCacheConfig {
+
+    // 最多缓存的食客数量
+    private long maxSize = 10000;
+
+    // 缓存时间，单位秒，食客修改昵称头像后最多延迟这么久生效
+    private long ttl = 300;
+
+}
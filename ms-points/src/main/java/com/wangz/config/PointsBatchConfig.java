@@ -0,0 +1,33 @@
+package com.wangz.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 积分批量写入配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "points.batch")
+public class PointsBatchConfig {
+
+    // 等待写入的积分最大数量，超过后新请求等待 offerTimeout 仍放不进去则直接失败
+    private int queueCapacity = 10000;
+
+    // 每批最多写入的数量
+    private int batchSize = 200;
+
+    // 攒批的最长时间，单位毫秒
+    private long flushInterval = 20;
+
+    // 队列满时等待的时间，单位毫秒
+    private long offerTimeout = 200;
+
+    // 等待写入完成的最长时间，单位毫秒
+    private long writeTimeout = 5000;
+
+    // 入库后计入排行榜失败时的重试间隔，单位毫秒
+    private long creditRetryInterval = 1000;
+
+}
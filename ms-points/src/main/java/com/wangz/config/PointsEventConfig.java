@@ -0,0 +1,42 @@
+package com.wangz.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 积分事件消费配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "points.event")
+public class PointsEventConfig {
+
+    // 积分事件 Stream 所在的 Redis 库，与 ms-diners 一致
+    private int database = 1;
+
+    // 消费组
+    private String group = "ms-points";
+
+    // 消费者名称，每个实例唯一且重启后不变，重启后继续处理自己未确认的事件
+    private String consumer = "ms-points";
+
+    // 每批最多处理的事件数
+    private int batchSize = 200;
+
+    // 没有事件时阻塞等待的时间，单位毫秒
+    private long blockMillis = 2000;
+
+    // 其它消费者未确认的事件超过该时间后由本消费者接手，单位毫秒
+    private long claimIdleMillis = 60000;
+
+    // 检查需要接手的事件的间隔，单位毫秒
+    private long claimInterval = 30000;
+
+    // 裁剪已确认事件的间隔，单位毫秒，未确认的事件不会被裁剪
+    private long trimInterval = 60000;
+
+    // 已计入排行榜的事件标记保留时间，单位秒
+    private long creditedTtl = 7 * 24 * 3600;
+
+}
@@ -0,0 +1,39 @@
+package com.wangz.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 分时段积分排行榜配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "points.rank")
+public class PointsRankConfig {
+
+    // 总榜分片数，为 1 时使用单个 diner:points，修改后需要重建总榜
+    private int shards = 1;
+
+    // 积分分布统计的区间宽度，大于 0 时开启，排名靠后的食客返回估算排名；开启前已有的积分需要重建分布
+    private int histogramBucket = 0;
+
+    // 开启积分分布统计后，估算排名在前多少名以内时仍查询准确排名
+    private int exactTop = 1000;
+
+    // 日榜保留天数，决定了最近 N 天排行榜的 N 最大是多少
+    private int dayRetention = 31;
+
+    // 周榜保留周数
+    private int weekRetention = 5;
+
+    // 月榜保留月数
+    private int monthRetention = 13;
+
+    // 总榜前 N 名本地快照的刷新间隔，单位毫秒，为 0 时不使用快照
+    private long snapshotRefresh = 1000;
+
+    // 最近 N 天排行榜合并结果的缓存时间，单位秒
+    private long unionTtl = 60;
+
+}
@@ -56,11 +56,13 @@ public class DinerPointsController {
      * 查询前 20 积分排行榜，同时显示用户排名 -- Redis
      *
      * @param access_token
+     * @param window       all=总榜（默认），day=日榜，week=周榜，month=月榜，Nd=最近 N 天
      * @return
      */
     @GetMapping("redis")
-    public ResultInfo findDinerPointsRankFromRedis(String access_token) {
-        List<DinerPointsRankVO> ranks = dinerPointsService.findDinerPointRankFromRedis(access_token);
+    public ResultInfo findDinerPointsRankFromRedis(String access_token,
+                                                   @RequestParam(required = false) String window) {
+        List<DinerPointsRankVO> ranks = dinerPointsService.findDinerPointRankFromRedis(access_token, window);
         return ResultInfoUtil.buildSuccess(request.getServletPath(), ranks);
     }
 
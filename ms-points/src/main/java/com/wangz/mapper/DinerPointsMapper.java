@@ -1,8 +1,10 @@
 package com.wangz.mapper;
 
 import com.wangz.model.pojo.DinerPoints;
+import com.wangz.model.pojo.DinerPointsEvent;
 import com.wangz.model.vo.DinerPointsRankVO;
 import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
@@ -18,6 +20,34 @@ public interface DinerPointsMapper {
             " values (#{fkDinerId}, #{points}, #{types}, 1, now(), now())")
     void save(DinerPoints dinerPoints);
 
+    // 批量添加积分，回填积分明细 ID
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    @Insert("<script> " +
+            " insert into t_diner_points (fk_diner_id, points, types, is_valid, create_date, update_date) values " +
+            " <foreach item=\"item\" collection=\"list\" separator=\",\"> " +
+            "   (#{item.fkDinerId}, #{item.points}, #{item.types}, 1, now(), now()) " +
+            " </foreach> " +
+            " </script>")
+    void saveBatch(@Param("list") List<? extends DinerPoints> list);
+
+    // 根据事件 ID 集合查询已入账的事件
+    @Select("<script> " +
+            " select event_id from t_diner_points_event where event_id in " +
+            " <foreach item=\"eventId\" collection=\"eventIds\" open=\"(\" separator=\",\" close=\")\"> " +
+            "   #{eventId} " +
+            " </foreach> " +
+            " </script>")
+    List<String> findEventIds(@Param("eventIds") List<String> eventIds);
+
+    // 批量记录已入账的事件，event_id 唯一
+    @Insert("<script> " +
+            " insert into t_diner_points_event (event_id, fk_diner_id, points, types, create_date) values " +
+            " <foreach item=\"item\" collection=\"list\" separator=\",\"> " +
+            "   (#{item.eventId}, #{item.fkDinerId}, #{item.points}, #{item.types}, now()) " +
+            " </foreach> " +
+            " </script>")
+    void saveEvents(@Param("list") List<DinerPointsEvent> list);
+
 
 
     // 查询积分排行榜 TOPN
@@ -31,22 +61,10 @@ public interface DinerPointsMapper {
 //            " ORDER BY total DESC LIMIT #{top}")
 //    List<DinerPointsRankVO> findTopN(@Param("top") int top);
 
-    // 查询积分排行榜 TOPN
-    @Select("SELECT t3.id id,total,rank,td.avatar_url,td.nickname,valid FROM" +
-            "(" +
-            "SELECT id,total,t2.valid valid," +
-            "@pointsRank:=@pointsRank+1 as rank " +
-            "FROM(" +
-            "SELECT t1.fk_diner_id id,t1.is_valid valid," +
-            "SUM(t1.points) total " +
-            "from t_diner_points t1 " +
-            "GROUP BY t1.fk_diner_id " +
-            "ORDER BY total desc " +
-            ") t2 ,(SELECT @pointsRank:=0) p " +
-            ") t3 " +
-            "LEFT JOIN t_diners td " +
-            "on t3.id=td.id "+
-            "LIMIT #{top}")
+    // 查询积分排行榜 TOPN，按 total 索引倒序取前 N 条，排名由调用方计算
+    @Select("SELECT t.fk_diner_id id, t.total, td.avatar_url, td.nickname " +
+            " FROM t_diner_points_total t LEFT JOIN t_diners td ON t.fk_diner_id = td.id " +
+            " ORDER BY t.total DESC, t.fk_diner_id LIMIT #{top}")
     List<DinerPointsRankVO> findTopN(@Param("top") int top);
 
     // 根据食客 ID 查询当前食客的积分排名
@@ -63,22 +81,21 @@ public interface DinerPointsMapper {
 //    DinerPointsRankVO findDinerRank(@Param("dinerId") int dinerId);
 
 
-    // 根据食客 ID 查询当前食客的积分排名
-    @Select("SELECT t3.id id,total,rank,td.avatar_url,td.nickname,valid FROM" +
-            "(" +
-            "SELECT id,total,t2.valid valid," +
-            "@pointsRank:=@pointsRank+1 as rank " +
-            "FROM(" +
-            "SELECT t1.fk_diner_id id,t1.is_valid valid," +
-            "SUM(t1.points) total " +
-            "from t_diner_points t1 " +
-            "GROUP BY t1.fk_diner_id " +
-            "ORDER BY total desc " +
-            ") t2 ,(SELECT @pointsRank:=0) p " +
-            ") t3 " +
-            "LEFT JOIN t_diners td " +
-            "on t3.id=td.id "+
-            " WHERE t3.id = #{dinerId}")
+    // 根据食客 ID 查询当前食客的积分排名，排名 = 积分更高的人数 + 1，走 total 索引范围扫描
+    @Select("SELECT t.fk_diner_id id, t.total, td.avatar_url, td.nickname, " +
+            " (SELECT COUNT(*) FROM t_diner_points_total r WHERE r.total > t.total) + 1 ranks " +
+            " FROM t_diner_points_total t LEFT JOIN t_diners td ON t.fk_diner_id = td.id " +
+            " WHERE t.fk_diner_id = #{dinerId}")
     DinerPointsRankVO findDinerRank(@Param("dinerId") int dinerId);
 
-}
\ No newline at end of file
+    // 累加食客积分总数
+    @Insert("<script> " +
+            " insert into t_diner_points_total (fk_diner_id, total, update_date) values " +
+            " <foreach item=\"item\" collection=\"list\" separator=\",\"> " +
+            "   (#{item.fkDinerId}, #{item.points}, now()) " +
+            " </foreach> " +
+            " on duplicate key update total = total + values(total), update_date = values(update_date) " +
+            " </script>")
+    void increaseTotals(@Param("list") List<DinerPoints> list);
+
+}
@@ -0,0 +1,194 @@
+package com.wangz.service;
+
+import com.wangz.component.PointsRankReader;
+import com.wangz.component.PointsRankWindows;
+import com.wangz.component.PointsTopCache;
+import com.wangz.config.PointsEventConfig;
+import com.wangz.config.PointsRankConfig;
+import com.wangz.mapper.DinerPointsMapper;
+import com.wangz.model.pojo.DinerPoints;
+import com.wangz.model.pojo.DinerPointsEvent;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 积分批量入账
+ * <p>
+ * 数据库通过 t_diner_points_event 的唯一事件 ID 去重，与积分明细、积分总数在同一事务中写入；
+ * Redis 总榜及日、周、月榜通过 points:credited:{分片标签}:{eventId} 标记去重。两边都按事件 ID 幂等，事件重复投递也只入账一次。
+ * 没有事件 ID 的积分（接口直接添加）不记录事件表，入库后按积分明细 ID 记录已计入标记，入库后计入排行榜失败时可以安全重试。
+ */
+@Service
+public class DinerPointsBatchService {
+
+    @Resource
+    private DinerPointsMapper dinerPointsMapper;
+    @Resource
+    private RedisTemplate redisTemplate;
+    @Resource
+    private DefaultRedisScript<List> creditScript;
+    @Resource
+    private PointsEventConfig pointsEventConfig;
+    @Resource
+    private PointsRankWindows pointsRankWindows;
+    @Resource
+    private PointsRankReader pointsRankReader;
+    @Resource
+    private PointsRankConfig pointsRankConfig;
+    @Resource
+    private PointsTopCache pointsTopCache;
+
+    /**
+     * 积分事件入库，已入账的事件跳过
+     *
+     * @param events
+     * @return 本次新入库的事件
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public List<DinerPointsEvent> saveEvents(List<DinerPointsEvent> events) {
+        // 没有事件 ID 的积分（如接口直接添加）不去重，有事件 ID 的同一批次内按事件 ID 去重
+        List<DinerPointsEvent> newEvents = new ArrayList<>(events.size());
+        Map<String, DinerPointsEvent> eventMap = new LinkedHashMap<>();
+        for (DinerPointsEvent event : events) {
+            if (event.getEventId() == null) {
+                newEvents.add(event);
+            } else {
+                eventMap.putIfAbsent(event.getEventId(), event);
+            }
+        }
+        if (!eventMap.isEmpty()) {
+            // 跳过已入账的事件
+            dinerPointsMapper.findEventIds(new ArrayList<>(eventMap.keySet())).forEach(eventMap::remove);
+            if (!eventMap.isEmpty()) {
+                dinerPointsMapper.saveEvents(new ArrayList<>(eventMap.values()));
+                newEvents.addAll(eventMap.values());
+            }
+        }
+        if (newEvents.isEmpty()) {
+            return Collections.emptyList();
+        }
+        dinerPointsMapper.saveBatch(newEvents);
+        // 同一食客合并后累加积分总数，按食客 ID 排序避免并发批次间死锁
+        Map<Integer, DinerPoints> totals = new TreeMap<>();
+        for (DinerPointsEvent event : newEvents) {
+            DinerPoints total = totals.computeIfAbsent(event.getFkDinerId(), dinerId -> {
+                DinerPoints dinerPoints = new DinerPoints();
+                dinerPoints.setFkDinerId(dinerId);
+                dinerPoints.setPoints(0);
+                return dinerPoints;
+            });
+            total.setPoints(total.getPoints() + event.getPoints());
+        }
+        dinerPointsMapper.increaseTotals(new ArrayList<>(totals.values()));
+        return newEvents;
+    }
+
+    /**
+     * 积分计入 Redis 排行榜，已计入的事件跳过
+     * <p>
+     * 每个分片执行一次脚本，只访问该分片 slot 内的 key；脚本返回本次计入的事件，
+     * 再用一次 pipeline 计入日、周、月榜。进程在两步之间退出时，已计入总榜的事件不会再计入分时段排行榜。
+     *
+     * @param events
+     */
+    public void creditRanking(List<DinerPointsEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        // 总榜分片时按分片分组，每个分片执行一次
+        Map<String, List<DinerPointsEvent>> shardEvents = new LinkedHashMap<>();
+        for (DinerPointsEvent event : events) {
+            shardEvents.computeIfAbsent(pointsRankReader.shardKey(event.getFkDinerId()), key -> new ArrayList<>())
+                    .add(event);
+        }
+        RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+        List<DinerPointsEvent> credited = new ArrayList<>(events.size());
+        shardEvents.forEach((shardKey, shard) -> {
+            // 总榜分片 + 本分片的积分分布 + 各事件的已计入标记
+            List<String> keys = new ArrayList<>(shard.size() + 2);
+            keys.add(shardKey);
+            keys.add(pointsRankReader.histogramKey(shardKey));
+            List<String> args = new ArrayList<>(shard.size() * 3 + 2);
+            args.add(String.valueOf(pointsEventConfig.getCreditedTtl()));
+            args.add(String.valueOf(pointsRankConfig.getHistogramBucket()));
+            for (DinerPointsEvent event : shard) {
+                String creditId = creditId(event);
+                if (creditId == null) {
+                    args.add("0");
+                } else {
+                    keys.add(pointsRankReader.creditedKey(shardKey, creditId));
+                    args.add(String.valueOf(keys.size()));
+                }
+                args.add(String.valueOf(event.getFkDinerId()));
+                args.add(String.valueOf(event.getPoints()));
+            }
+            List<Long> result = (List<Long>) redisTemplate.execute(creditScript, serializer, serializer,
+                    keys, args.toArray());
+            if (result == null || result.isEmpty()) {
+                return;
+            }
+            pointsTopCache.onCredited(result.get(0));
+            for (int i = 1; i < result.size(); i++) {
+                credited.add(shard.get(result.get(i).intValue() - 1));
+            }
+        });
+        creditWindows(credited);
+    }
+
+    /**
+     * 已计入标记使用的 ID：有事件 ID 时使用事件 ID，否则使用入库时回填的积分明细 ID
+     *
+     * @param event
+     * @return 都没有时返回 null，不去重
+     */
+    private String creditId(DinerPointsEvent event) {
+        if (event.getEventId() != null) {
+            return event.getEventId();
+        }
+        return event.getId() == null ? null : "detail:" + event.getId();
+    }
+
+    /**
+     * 计入当天、当周、当月的排行榜
+     *
+     * @param credited 本次计入总榜的事件
+     */
+    private void creditWindows(List<DinerPointsEvent> credited) {
+        if (credited.isEmpty()) {
+            return;
+        }
+        List<String> windowKeys = pointsRankWindows.creditKeys(LocalDate.now());
+        List<String> windowTtls = pointsRankWindows.creditTtls();
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                ZSetOperations zSetOperations = operations.opsForZSet();
+                for (int k = 0; k < windowKeys.size(); k++) {
+                    for (DinerPointsEvent event : credited) {
+                        zSetOperations.incrementScore(windowKeys.get(k), event.getFkDinerId(), event.getPoints());
+                    }
+                    operations.expire((K) windowKeys.get(k), Long.parseLong(windowTtls.get(k)), TimeUnit.SECONDS);
+                }
+                return null;
+            }
+        });
+    }
+
+}
@@ -1,25 +1,19 @@
 package com.wangz.service;
 
-import cn.hutool.core.bean.BeanUtil;
-import cn.hutool.core.util.StrUtil;
 import com.google.common.collect.Lists;
-import com.wangz.constant.ApiConstant;
+import com.wangz.component.DinerPointsBatchWriter;
+import com.wangz.component.PointsRankReader;
+import com.wangz.component.PointsRankWindows;
+import com.wangz.component.PointsTopCache;
+import com.wangz.component.SignInDinerInfoResolver;
 import com.wangz.constant.RedisKeyConstant;
-import com.wangz.exception.ParameterException;
-import com.wangz.model.domain.ResultInfo;
-import com.wangz.model.pojo.DinerPoints;
+import com.wangz.model.pojo.DinerPointsEvent;
 import com.wangz.model.vo.DinerPointsRankVO;
-import com.wangz.model.vo.ShortDinerInfo;
 import com.wangz.model.vo.SignInDinerInfo;
 import com.wangz.utils.AssertUtil;
 import com.wangz.mapper.DinerPointsMapper;
 import org.springframework.beans.BeanUtils;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
 
 import javax.annotation.Resource;
 import java.util.*;
@@ -33,15 +27,17 @@ public class DinerPointsService {
     @Resource
     private DinerPointsMapper dinerPointsMapper;
     @Resource
-    private RestTemplate restTemplate;
+    private DinerPointsBatchWriter dinerPointsBatchWriter;
     @Resource
-    private RedisTemplate redisTemplate;
-    @Value("${service.name.ms-oauth-server}")
-    private String oauthServerName;
-    @Value("${service.name.ms-diners-server}")
-    private String dinersServerName;
+    private PointsTopCache pointsTopCache;
+    @Resource
+    private PointsRankWindows pointsRankWindows;
+    @Resource
+    private PointsRankReader pointsRankReader;
+    @Resource
+    private SignInDinerInfoResolver signInDinerInfoResolver;
     // 排行榜 TOPN
-    private static final int TOPN = 20;
+    private static final int TOPN = PointsTopCache.TOPN;
 
 
     /**
@@ -51,24 +47,18 @@ public class DinerPointsService {
      * @param points  积分
      * @param types   类型 0=签到，1=关注好友，2=添加Feed，3=添加商户评论
      */
-    @Transactional(rollbackFor = Exception.class)
     public void addPoints(Integer dinerId, Integer points, Integer types) {
         // 基本参数校验
         AssertUtil.isTrue(dinerId == null || dinerId < 1, "食客不能为空");
         AssertUtil.isTrue(points == null || points < 1, "积分不能为空");
         AssertUtil.isTrue(types == null, "请选择对应的积分类型");
 
-        // 插入数据库
-        DinerPoints dinerPoints = new DinerPoints();
+        // 攒批写入数据库和 Redis，写入完成后返回；接口添加的积分没有事件 ID，不去重
+        DinerPointsEvent dinerPoints = new DinerPointsEvent();
         dinerPoints.setFkDinerId(dinerId);
         dinerPoints.setPoints(points);
         dinerPoints.setTypes(types);
-        dinerPointsMapper.save(dinerPoints);
-
-        //将积分保存到Redis中
-        redisTemplate.opsForZSet().incrementScore(
-                RedisKeyConstant.diner_points.getKey(),dinerId,points
-        );
+        dinerPointsBatchWriter.write(dinerPoints);
     }
 
     /**
@@ -78,76 +68,67 @@ public class DinerPointsService {
      * @return
      */
     public List<DinerPointsRankVO> findDinerPointRankFromRedis(String accessToken) {
-        // 获取登录用户信息
-        SignInDinerInfo signInDinerInfo = loadSignInDinerInfo(accessToken);
-        // 统计积分排行榜
-        Set<ZSetOperations.TypedTuple<Integer>> rangeWithScores = redisTemplate.opsForZSet().reverseRangeWithScores(
-                RedisKeyConstant.diner_points.getKey(), 0, 19);
-        if (rangeWithScores == null || rangeWithScores.isEmpty()) {
-            return Lists.newArrayList();
-        }
-        // 初始化食客 ID 集合
-        List<Integer> rankDinerIds = Lists.newArrayList();
-        // 根据 key：食客 ID value：积分信息 构建一个 Map
-        Map<Integer, DinerPointsRankVO> ranksMap = new LinkedHashMap<>();
-        // 初始化排名
-        int rank = 1;
-        // 循环处理排行榜，添加排名信息
-        for (ZSetOperations.TypedTuple<Integer> rangeWithScore : rangeWithScores) {
-            // 食客ID
-            Integer dinerId = rangeWithScore.getValue();
-            // 积分
-            int points = rangeWithScore.getScore().intValue();
-            // 将食客 ID 添加至食客 ID 集合
-            rankDinerIds.add(dinerId);
-            DinerPointsRankVO dinerPointsRankVO = new DinerPointsRankVO();
-            dinerPointsRankVO.setId(dinerId);
-            dinerPointsRankVO.setRanks(rank);
-            dinerPointsRankVO.setTotal(points);
-            // 将 VO 对象添加至 Map 中
-            ranksMap.put(dinerId, dinerPointsRankVO);
-            // 排名 +1
-            rank++;
-        }
+        return findDinerPointRankFromRedis(accessToken, PointsRankWindows.ALL);
+    }
 
-        // 获取 Diners 用户信息
-        ResultInfo resultInfo = restTemplate.getForObject(dinersServerName +
-                        "findByIds?access_token=${accessToken}&ids={ids}",
-                ResultInfo.class, accessToken, StrUtil.join(",", rankDinerIds));
-        if (resultInfo.getCode() != ApiConstant.SUCCESS_CODE) {
-            throw new ParameterException(resultInfo.getCode(), resultInfo.getMessage());
+    /**
+     * 查询指定时段前 20 积分排行榜，并显示个人排名 -- Redis
+     *
+     * @param accessToken
+     * @param window      all=总榜，day=日榜，week=周榜，month=月榜，Nd=最近 N 天
+     * @return
+     */
+    public List<DinerPointsRankVO> findDinerPointRankFromRedis(String accessToken, String window) {
+        // 获取登录用户信息
+        SignInDinerInfo signInDinerInfo = signInDinerInfoResolver.resolve(accessToken);
+        String key = pointsRankWindows.resolveKey(window);
+        Integer myId = signInDinerInfo.getId();
+        // 总榜前 N 名优先使用本地快照，只有个人排名需要查询 Redis
+        PointsTopCache.Snapshot snapshot = RedisKeyConstant.diner_points.getKey().equals(key)
+                ? pointsTopCache.get() : null;
+        Map<Integer, DinerPointsRankVO> ranksMap;
+        PointsRankReader.Page page;
+        if (snapshot != null) {
+            // 快照中的对象是共享的，复制后再修改
+            ranksMap = new LinkedHashMap<>();
+            for (DinerPointsRankVO cached : snapshot.getRanks().values()) {
+                DinerPointsRankVO rankVO = new DinerPointsRankVO();
+                BeanUtils.copyProperties(cached, rankVO);
+                ranksMap.put(rankVO.getId(), rankVO);
+            }
+            if (ranksMap.containsKey(myId)) {
+                ranksMap.get(myId).setIsMe(1);
+                return Lists.newArrayList(ranksMap.values());
+            }
+            page = pointsRankReader.read(key, 0, myId);
+        } else {
+            page = pointsRankReader.read(key, TOPN, myId);
+            ranksMap = pointsTopCache.buildRanks(page.getTop(), accessToken);
         }
-        List<LinkedHashMap> dinerInfoMaps = (List<LinkedHashMap>) resultInfo.getData();
-        // 完善食客昵称和头像
-        for (LinkedHashMap dinerInfoMap : dinerInfoMaps) {
-            ShortDinerInfo shortDinerInfo = BeanUtil.fillBeanWithMap(dinerInfoMap,
-                    new ShortDinerInfo(), false);
-            DinerPointsRankVO rankVO = ranksMap.get(shortDinerInfo.getId());
-            rankVO.setNickname(shortDinerInfo.getNickname());
-            rankVO.setAvatarUrl(shortDinerInfo.getAvatarUrl());
+        if (ranksMap.isEmpty()) {
+            return Lists.newArrayList();
         }
 
         // 判断个人是否在 ranks 中，如果在，添加标记直接返回
-        if (ranksMap.containsKey(signInDinerInfo.getId())) {
-            DinerPointsRankVO rankVO = ranksMap.get(signInDinerInfo.getId());
+        if (ranksMap.containsKey(myId)) {
+            DinerPointsRankVO rankVO = ranksMap.get(myId);
             rankVO.setIsMe(1);
+            rankVO.setTopPercent(page.getTopPercent());
             return Lists.newArrayList(ranksMap.values());
         }
 
-        // 如果不在 ranks 中，获取个人排名追加在最后
-        // 获取排名
-        Long myRank = redisTemplate.opsForZSet().reverseRank(
-                RedisKeyConstant.diner_points.getKey(), signInDinerInfo.getId());
-        if (myRank != null) {
+        // 如果不在 ranks 中，个人排名追加在最后
+        Long myRank = page.getMyRank();
+        Double myPoints = page.getMyScore();
+        if (myRank != null && myPoints != null) {
             DinerPointsRankVO me = new DinerPointsRankVO();
             BeanUtils.copyProperties(signInDinerInfo, me);
-            me.setRanks(myRank.intValue() + 1);// 排名从 0 开始
+            me.setRanks(myRank.intValue());
             me.setIsMe(1);
-            // 获取积分
-            Double points = redisTemplate.opsForZSet().score(RedisKeyConstant.diner_points.getKey(),
-                    signInDinerInfo.getId());
-            me.setTotal(points.intValue());
-            ranksMap.put(signInDinerInfo.getId(), me);
+            me.setApproximate(page.isApproximate() ? 1 : 0);
+            me.setTopPercent(page.getTopPercent());
+            me.setTotal(myPoints.intValue());
+            ranksMap.put(myId, me);
         }
         return Lists.newArrayList(ranksMap.values());
     }
@@ -160,7 +141,7 @@ public class DinerPointsService {
      */
     public List<DinerPointsRankVO> findDinerPointRank(String accessToken) {
         // 获取登录用户信息
-        SignInDinerInfo signInDinerInfo = loadSignInDinerInfo(accessToken);
+        SignInDinerInfo signInDinerInfo = signInDinerInfoResolver.resolve(accessToken);
         // 统计积分排行榜
         List<DinerPointsRankVO> ranks = dinerPointsMapper.findTopN(TOPN);
         if (ranks == null || ranks.isEmpty()) {
@@ -169,7 +150,11 @@ public class DinerPointsService {
         // 根据 key：食客 ID value：积分信息 构建一个 Map
         Map<Integer, DinerPointsRankVO> ranksMap = new LinkedHashMap<>();
         for (int i = 0; i < ranks.size(); i++) {
-            ranksMap.put(ranks.get(i).getId(), ranks.get(i));
+            DinerPointsRankVO rank = ranks.get(i);
+            // 积分相同排名相同
+            rank.setRanks(i > 0 && rank.getTotal() == ranks.get(i - 1).getTotal()
+                    ? ranks.get(i - 1).getRanks() : i + 1);
+            ranksMap.put(rank.getId(), rank);
         }
         // 判断个人是否在 ranks 中，如果在，添加标记直接返回
         if (ranksMap.containsKey(signInDinerInfo.getId())) {
@@ -179,31 +164,11 @@ public class DinerPointsService {
         }
         // 如果不在 ranks 中，获取个人排名追加在最后
         DinerPointsRankVO myRank = dinerPointsMapper.findDinerRank(signInDinerInfo.getId());
-        myRank.setIsMe(1);
-        ranks.add(myRank);
-        return ranks;
-    }
-
-    /**
-     * 获取登录用户信息
-     *
-     * @param accessToken
-     * @return
-     */
-    private SignInDinerInfo loadSignInDinerInfo(String accessToken) {
-        // 必须登录
-        AssertUtil.mustLogin(accessToken);
-        String url = oauthServerName + "user/me?access_token={accessToken}";
-        ResultInfo resultInfo = restTemplate.getForObject(url, ResultInfo.class, accessToken);
-        if (resultInfo.getCode() != ApiConstant.SUCCESS_CODE) {
-            throw new ParameterException(resultInfo.getCode(), resultInfo.getMessage());
-        }
-        SignInDinerInfo dinerInfo = BeanUtil.fillBeanWithMap((LinkedHashMap) resultInfo.getData(),
-                new SignInDinerInfo(), false);
-        if (dinerInfo == null) {
-            throw new ParameterException(ApiConstant.NO_LOGIN_CODE, ApiConstant.NO_LOGIN_MESSAGE);
+        if (myRank != null) {
+            myRank.setIsMe(1);
+            ranks.add(myRank);
         }
-        return dinerInfo;
+        return ranks;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+-- 积分计入总榜的一个分片，每个事件只计一次；所有 key 使用同一个 hash tag，集群模式下位于同一个节点
+-- KEYS[1] 总榜 diner:points，分片时为 diner:points:{分片号}
+-- KEYS[2] 本分片的积分分布 diner:points:histogram:{分片标签}
+-- KEYS[3...] 本批事件的已计入标记 points:credited:{分片标签}:{事件 ID 或 detail:积分明细 ID}
+-- ARGV[1] 已计入标记的保留时间，单位秒
+-- ARGV[2] 积分分布的区间宽度，为 0 时不统计
+-- ARGV[3...] 每个事件三个参数：已计入标记在 KEYS 中的位置（0 表示不去重），食客 ID，积分
+-- 返回 {本次计入事件后总榜中最高的新积分（没有计入时为 -1）, 计入的事件序号（从 1 开始）...}
+local maxScore = -1;
+local credited = {};
+local bucket = tonumber(ARGV[2]);
+for i = 3, #ARGV, 3 do
+    local marker = tonumber(ARGV[i]);
+    if (marker == 0 or redis.call('set', KEYS[marker], 1, 'NX', 'EX', ARGV[1])) then
+        local before = redis.call('zscore', KEYS[1], ARGV[i + 1]);
+        local after = tonumber(redis.call('zincrby', KEYS[1], ARGV[i + 2], ARGV[i + 1]));
+        if (after > maxScore) then
+            maxScore = after;
+        end;
+        -- 食客积分跨区间时从原区间移到新区间
+        if (bucket > 0) then
+            local newBucket = math.floor(after / bucket);
+            if (not before) then
+                redis.call('hincrby', KEYS[2], newBucket, 1);
+            else
+                local oldBucket = math.floor(tonumber(before) / bucket);
+                if (oldBucket ~= newBucket) then
+                    redis.call('hincrby', KEYS[2], oldBucket, -1);
+                    redis.call('hincrby', KEYS[2], newBucket, 1);
+                end;
+            end;
+        end;
+        credited[#credited + 1] = (i - 3) / 3 + 1;
+    end;
+end;
+table.insert(credited, 1, maxScore);
+return credited;
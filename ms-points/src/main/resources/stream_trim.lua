@@ -0,0 +1,31 @@
+-- 裁剪 Stream 中所有消费组都已确认的消息，未确认（在 PEL 中）和还未投递的消息不会被裁剪
+-- 需要 Redis 6.2 及以上（XTRIM MINID）
+-- KEYS[1] Stream
+-- 返回裁剪的消息数，没有消费组时不裁剪
+local function less(a, b)
+    local ams, aseq = string.match(a, '(%d+)-(%d+)');
+    local bms, bseq = string.match(b, '(%d+)-(%d+)');
+    ams, aseq, bms, bseq = tonumber(ams), tonumber(aseq), tonumber(bms), tonumber(bseq);
+    return ams < bms or (ams == bms and aseq < bseq);
+end;
+local minId;
+for _, group in ipairs(redis.call('xinfo', 'groups', KEYS[1])) do
+    local name, lastDelivered;
+    for i = 1, #group, 2 do
+        if (group[i] == 'name') then
+            name = group[i + 1];
+        elseif (group[i] == 'last-delivered-id') then
+            lastDelivered = group[i + 1];
+        end;
+    end;
+    -- 有未确认的消息时保留最早的未确认消息，否则保留最后投递的消息之后的消息
+    local pending = redis.call('xpending', KEYS[1], name);
+    local oldest = pending[2] or lastDelivered;
+    if (not minId or less(oldest, minId)) then
+        minId = oldest;
+    end;
+end;
+if (not minId) then
+    return 0;
+end;
+return redis.call('xtrim', KEYS[1], 'MINID', '~', minId);
@@ -0,0 +1,121 @@
+package com.wangz.component;
+
+import com.wangz.config.PointsBatchConfig;
+import com.wangz.exception.ParameterException;
+import com.wangz.model.pojo.DinerPointsEvent;
+import com.wangz.service.DinerPointsBatchService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+public class DinerPointsBatchWriterTest {
+
+    private static final int BATCH_SIZE = 20;
+
+    private DinerPointsBatchWriter writer;
+    private DinerPointsBatchService batchService;
+    // 每次写入的批次
+    private final List<List<DinerPointsEvent>> batches = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        batchService = mock(DinerPointsBatchService.class);
+        doAnswer(invocation -> {
+            batches.add(new ArrayList<>(invocation.getArgument(0)));
+            return Collections.emptyList();
+        }).when(batchService).saveEvents(anyList());
+
+        PointsBatchConfig batchConfig = new PointsBatchConfig();
+        batchConfig.setBatchSize(BATCH_SIZE);
+        batchConfig.setFlushInterval(10);
+        batchConfig.setCreditRetryInterval(50);
+        writer = new DinerPointsBatchWriter();
+        ReflectionTestUtils.setField(writer, "pointsBatchConfig", batchConfig);
+        ReflectionTestUtils.setField(writer, "dinerPointsBatchService", batchService);
+        writer.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writer.stop();
+    }
+
+    // 并发写入的积分全部写入，且每批不超过 batchSize
+    @Test
+    void testConcurrentWritesAreBatched() throws Exception {
+        int threads = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            int dinerId = t + 1;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 10; i++) {
+                    writer.write(event(dinerId));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        int total = 0;
+        for (List<DinerPointsEvent> batch : batches) {
+            assertTrue(batch.size() <= BATCH_SIZE);
+            total += batch.size();
+        }
+        assertEquals(threads * 10, total);
+        assertTrue(batches.size() < threads * 10, "积分应合并写入");
+    }
+
+    // 入库失败时调用方收到异常
+    @Test
+    void testWriteFailurePropagates() {
+        doThrow(new IllegalStateException("db down")).when(batchService).saveEvents(anyList());
+        assertThrows(ParameterException.class, () -> writer.write(event(1)));
+    }
+
+    // 入库后计入排行榜失败不影响调用方，稍后重试同一批积分
+    @Test
+    void testCreditFailureRetriedAfterCommit() {
+        List<List<DinerPointsEvent>> credited = Collections.synchronizedList(new ArrayList<>());
+        doThrow(new IllegalStateException("redis down"))
+                .doAnswer(invocation -> credited.add(new ArrayList<>(invocation.getArgument(0))))
+                .when(batchService).creditRanking(anyList());
+
+        DinerPointsEvent event = event(1);
+        writer.write(event);
+
+        verify(batchService, timeout(5000).times(2)).creditRanking(anyList());
+        assertEquals(1, credited.size());
+        assertEquals(Collections.singletonList(event), credited.get(0));
+    }
+
+    private DinerPointsEvent event(Integer dinerId) {
+        DinerPointsEvent event = new DinerPointsEvent();
+        event.setFkDinerId(dinerId);
+        event.setPoints(10);
+        event.setTypes(0);
+        return event;
+    }
+
+}
@@ -3,6 +3,7 @@ package com.wangz.service;
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.StrUtil;
 import com.google.common.collect.Lists;
+import com.wangz.component.SignInDinerInfoResolver;
 import com.wangz.constant.ApiConstant;
 import com.wangz.constant.RedisKeyConstant;
 import com.wangz.exception.ParameterException;
@@ -30,11 +31,11 @@ import java.util.stream.Collectors;
 @Service
 public class ReviewsService {
 
-    @Value("${service.name.ms-oauth-server}")
-    private String oauthServerName;
     @Resource
     private RestTemplate restTemplate;
     @Resource
+    private SignInDinerInfoResolver signInDinerInfoResolver;
+    @Resource
     private RedisTemplate redisTemplate;
     @Resource
     private RestaurantService restaurantService;
@@ -60,7 +61,7 @@ public class ReviewsService {
         Restaurant restaurant = restaurantService.findById(restaurantId);
         AssertUtil.isTrue(restaurant == null, "该餐厅不存在");
         // 获取登录用户信息
-        SignInDinerInfo signInDinerInfo = loadSignInDinerInfo(accessToken);
+        SignInDinerInfo signInDinerInfo = signInDinerInfoResolver.resolve(accessToken);
         // 插入数据库
         Reviews reviews = new Reviews();
         reviews.setContent(content);
@@ -131,28 +132,4 @@ public class ReviewsService {
         return reviewsVOS;
     }
 
-    /**
-     * 获取登录用户信息
-     *
-     * @param accessToken
-     * @return
-     */
-    private SignInDinerInfo loadSignInDinerInfo(String accessToken) {
-        // 登录校验
-        AssertUtil.mustLogin(accessToken);
-        // 获取登录用户信息
-        String url = oauthServerName + "user/me?access_token={accessToken}";
-        ResultInfo resultInfo = restTemplate.getForObject(url, ResultInfo.class, accessToken);
-        if (resultInfo.getCode() != ApiConstant.SUCCESS_CODE) {
-            throw new ParameterException(resultInfo.getCode(), resultInfo.getMessage());
-        }
-        // 这里的data是一个LinkedHashMap，SignInDinerInfo
-        SignInDinerInfo dinerInfo = BeanUtil.fillBeanWithMap((LinkedHashMap) resultInfo.getData(),
-                new SignInDinerInfo(), true);
-        if (dinerInfo == null) {
-            throw new ParameterException(ApiConstant.NO_LOGIN_CODE, ApiConstant.NO_LOGIN_MESSAGE);
-        }
-        return dinerInfo;
-    }
-
 }
\ No newline at end of file
@@ -3,8 +3,10 @@ package com.wangz;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @MapperScan("com.wangz.mapper")
+@EnableScheduling
 @SpringBootApplication
 public class SeckillApplication {
 
@@ -0,0 +1,198 @@
+package com.wangz.component;
+
+import com.wangz.config.SeckillGateConfig;
+import com.wangz.constant.RedisKeyConstant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * 秒杀本地拦截
+ * <p>
+ * 已卖完、已结束、未开始的代金券在本地记录，之后的请求不再访问 Redis 和授权服务直接拒绝；
+ * 卖完的消息通过 Redis 发布订阅通知其它实例，重新添加抢购活动时清除标记和代金券信息缓存。
+ * 开启本地令牌后，每个实例放行的请求数不超过剩余库存的 permitFactor 倍，多出的请求直接拒绝。
+ */
+@Slf4j
+@Component
+public class SeckillLocalGate implements MessageListener {
+
+    // 消息类型：已卖完
+    private static final String SOLD_OUT = "sold_out";
+    // 消息类型：重新添加抢购活动
+    private static final String RESET = "reset";
+
+    public static final String SOLD_OUT_MESSAGE = "该券已经卖完了";
+    public static final String ENDED_MESSAGE = "该抢购已结束";
+    public static final String NOT_STARTED_MESSAGE = "该抢购还未开始";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+    @Resource
+    private SeckillGateConfig seckillGateConfig;
+    @Resource
+    private SeckillVoucherCache seckillVoucherCache;
+
+    // key：代金券 ID value：拒绝原因，已卖完或已结束
+    private final Map<Integer, String> closed = new ConcurrentHashMap<>();
+    // key：代金券 ID value：开始时间（毫秒级时间戳）
+    private final Map<Integer, Long> notStarted = new ConcurrentHashMap<>();
+    // key：代金券 ID value：本地剩余令牌
+    private final Map<Integer, AtomicLong> permits = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this,
+                new ChannelTopic(RedisKeyConstant.seckill_vouchers_changed.getKey()));
+    }
+
+    /**
+     * 本地判断是否需要拒绝
+     *
+     * @param voucherId
+     * @return 拒绝原因，可以继续抢购时返回 null
+     */
+    public String rejectReason(Integer voucherId) {
+        String reason = closed.get(voucherId);
+        if (reason != null) {
+            return reason;
+        }
+        Long startTime = notStarted.get(voucherId);
+        if (startTime != null) {
+            if (startTime > System.currentTimeMillis()) {
+                return NOT_STARTED_MESSAGE;
+            }
+            notStarted.remove(voucherId, startTime);
+        }
+        return null;
+    }
+
+    /**
+     * 记录未开始
+     *
+     * @param voucherId
+     * @param startTime 开始时间（毫秒级时间戳）
+     */
+    public void markNotStarted(Integer voucherId, long startTime) {
+        notStarted.put(voucherId, startTime);
+    }
+
+    /**
+     * 记录已结束，各实例根据结束时间自行判断，不需要通知
+     *
+     * @param voucherId
+     */
+    public void markEnded(Integer voucherId) {
+        closed.put(voucherId, ENDED_MESSAGE);
+        permits.remove(voucherId);
+    }
+
+    /**
+     * 记录已卖完并通知其它实例
+     *
+     * @param voucherId
+     */
+    public void markSoldOut(Integer voucherId) {
+        if (closed.putIfAbsent(voucherId, SOLD_OUT_MESSAGE) == null) {
+            permits.remove(voucherId);
+            publish(SOLD_OUT, voucherId);
+        }
+    }
+
+    /**
+     * 重新添加抢购活动，清除所有实例的本地标记
+     *
+     * @param voucherId
+     */
+    public void reset(Integer voucherId) {
+        clear(voucherId);
+        publish(RESET, voucherId);
+    }
+
+    /**
+     * 获取本地令牌，第一次获取时按剩余库存初始化，令牌数不会小于 0
+     *
+     * @param voucherId
+     * @param stock     当前剩余库存，只在初始化时读取
+     * @return 令牌不足返回 false
+     */
+    public boolean tryAcquire(Integer voucherId, IntSupplier stock) {
+        if (!seckillGateConfig.isPermitsEnabled()) {
+            return true;
+        }
+        AtomicLong remaining = permits.computeIfAbsent(voucherId,
+                id -> new AtomicLong((long) Math.ceil(stock.getAsInt() * seckillGateConfig.getPermitFactor())));
+        for (; ; ) {
+            long current = remaining.get();
+            if (current <= 0) {
+                return false;
+            }
+            if (remaining.compareAndSet(current, current - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 归还本地令牌，请求没有消耗库存时调用（如已抢购过）
+     *
+     * @param voucherId
+     */
+    public void release(Integer voucherId) {
+        if (!seckillGateConfig.isPermitsEnabled()) {
+            return;
+        }
+        AtomicLong remaining = permits.get(voucherId);
+        if (remaining != null) {
+            remaining.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int index = body.indexOf(':');
+        if (index < 0) {
+            return;
+        }
+        try {
+            Integer voucherId = Integer.valueOf(body.substring(index + 1));
+            String type = body.substring(0, index);
+            if (SOLD_OUT.equals(type)) {
+                closed.putIfAbsent(voucherId, SOLD_OUT_MESSAGE);
+                permits.remove(voucherId);
+            } else if (RESET.equals(type)) {
+                clear(voucherId);
+            }
+        } catch (NumberFormatException e) {
+            log.warn("忽略格式不正确的秒杀通知：{}", body);
+        }
+    }
+
+    private void clear(Integer voucherId) {
+        seckillVoucherCache.invalidate(voucherId);
+        closed.remove(voucherId);
+        notStarted.remove(voucherId);
+        permits.remove(voucherId);
+    }
+
+    private void publish(String type, Integer voucherId) {
+        stringRedisTemplate.convertAndSend(RedisKeyConstant.seckill_vouchers_changed.getKey(),
+                type + ":" + voucherId);
+    }
+
+}
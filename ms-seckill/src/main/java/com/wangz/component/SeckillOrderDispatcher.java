@@ -0,0 +1,274 @@
+package com.wangz.component;
+
+import com.wangz.config.SeckillOrderConfig;
+import com.wangz.mapper.VoucherOrdersMapper;
+import com.wangz.model.pojo.VoucherOrders;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 秒杀订单异步入库
+ * <p>
+ * 抢购成功的订单由 seckill.lua 写入 seckill:orders，这里以消费组的方式按批次读取，
+ * 用一条 insert ignore 批量入库后再 XACK；订单编号唯一，重复投递的订单不会重复入库。
+ * 库存分桶时每个分桶有自己的订单 Stream，每个 Stream 一个消费线程，使用过的分桶数记录在 Redis 中，
+ * 调小分桶数后旧分桶的 Stream 仍会被消费，其它实例新增的分桶也会定时补上消费线程。
+ * 消费者下线或改名后，它未确认的订单空闲超过 claimIdleMillis 后由其它消费者 XCLAIM 接手。
+ * 下单脚本不按长度裁剪 Stream，这里每 trimInterval 用 XTRIM MINID 裁剪最早的未确认订单之前的订单。
+ */
+@Slf4j
+@Component
+public class SeckillOrderDispatcher {
+
+    @Resource
+    private RedisConnectionFactory redisConnectionFactory;
+    @Resource
+    private SeckillOrderConfig seckillOrderConfig;
+    @Resource
+    private VoucherOrdersMapper voucherOrdersMapper;
+    @Resource
+    private SeckillStockBuckets seckillStockBuckets;
+
+    private StringRedisTemplate streamRedisTemplate;
+    private final DefaultRedisScript<Long> trimScript = new DefaultRedisScript<>();
+    private volatile boolean running = true;
+    // key：订单 Stream value：消费线程
+    private final Map<String, Thread> workers = new ConcurrentHashMap<>();
+    private ScheduledExecutorService supervisor;
+
+    @PostConstruct
+    public void start() {
+        streamRedisTemplate = new StringRedisTemplate(redisConnectionFactory);
+        trimScript.setLocation(new ClassPathResource("stream_trim.lua"));
+        trimScript.setResultType(Long.class);
+        ensureWorkers();
+        supervisor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "seckill-order-supervisor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        supervisor.scheduleWithFixedDelay(() -> {
+            try {
+                ensureWorkers();
+            } catch (Exception e) {
+                log.warn("检查秒杀订单 Stream 失败：{}", e.toString());
+            }
+        }, seckillOrderConfig.getClaimInterval(), seckillOrderConfig.getClaimInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        supervisor.shutdownNow();
+        for (Thread worker : workers.values()) {
+            worker.join(seckillOrderConfig.getBlockMillis() * 2);
+        }
+    }
+
+    /**
+     * 为还没有消费线程的订单 Stream 创建消费组并启动消费线程
+     */
+    private synchronized void ensureWorkers() {
+        for (String stream : seckillStockBuckets.allOrdersKeys()) {
+            if (workers.containsKey(stream)) {
+                continue;
+            }
+            createGroup(stream);
+            Thread worker = new Thread(() -> dispatch(stream), "seckill-order-dispatcher-" + stream);
+            worker.setDaemon(true);
+            worker.start();
+            workers.put(stream, worker);
+        }
+    }
+
+    /**
+     * 创建消费组，已存在时忽略
+     *
+     * @param stream
+     */
+    private void createGroup(String stream) {
+        try {
+            streamRedisTemplate.execute((RedisCallback<Object>) con -> con.execute("XGROUP",
+                    bytes("CREATE"), bytes(stream),
+                    bytes(seckillOrderConfig.getGroup()), bytes("0"), bytes("MKSTREAM")));
+        } catch (Exception e) {
+            String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            if (message == null || !message.contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 循环消费，先处理本消费者未确认的订单，处理完再读新订单
+     *
+     * @param stream
+     */
+    private void dispatch(String stream) {
+        boolean pending = true;
+        long nextClaim = 0;
+        long nextTrim = System.currentTimeMillis() + seckillOrderConfig.getTrimInterval();
+        while (running) {
+            try {
+                if (System.currentTimeMillis() >= nextClaim) {
+                    nextClaim = System.currentTimeMillis() + seckillOrderConfig.getClaimInterval();
+                    reclaim(stream);
+                }
+                if (System.currentTimeMillis() >= nextTrim) {
+                    nextTrim = System.currentTimeMillis() + seckillOrderConfig.getTrimInterval();
+                    trim(stream);
+                }
+                StreamOffset<String> offset = StreamOffset.create(stream,
+                        pending ? ReadOffset.from("0") : ReadOffset.lastConsumed());
+                List<MapRecord<String, Object, Object>> records = streamRedisTemplate.opsForStream().read(
+                        Consumer.from(seckillOrderConfig.getGroup(), seckillOrderConfig.getConsumer()),
+                        StreamReadOptions.empty()
+                                .count(seckillOrderConfig.getBatchSize())
+                                .block(Duration.ofMillis(seckillOrderConfig.getBlockMillis())),
+                        offset);
+                if (records == null || records.isEmpty()) {
+                    pending = false;
+                    continue;
+                }
+                handle(stream, records);
+            } catch (Exception e) {
+                log.error("秒杀订单入库失败，稍后重试", e);
+                pending = true;
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 接手其它消费者空闲超过 claimIdleMillis 的未确认订单并入库
+     *
+     * @param stream
+     */
+    private void reclaim(String stream) {
+        Duration minIdle = Duration.ofMillis(seckillOrderConfig.getClaimIdleMillis());
+        String consumer = seckillOrderConfig.getConsumer();
+        int count = seckillOrderConfig.getBatchSize();
+        Range<String> range = Range.unbounded();
+        while (running) {
+            PendingMessages pending = streamRedisTemplate.opsForStream().pending(stream,
+                    seckillOrderConfig.getGroup(), range, count);
+            List<RecordId> stale = new ArrayList<>();
+            String last = null;
+            for (PendingMessage message : pending) {
+                last = message.getIdAsString();
+                if (!consumer.equals(message.getConsumerName())
+                        && message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) >= 0) {
+                    stale.add(message.getId());
+                }
+            }
+            if (!stale.isEmpty()) {
+                List<MapRecord<String, Object, Object>> records = streamRedisTemplate.opsForStream().claim(stream,
+                        seckillOrderConfig.getGroup(), consumer, minIdle, stale.toArray(new RecordId[0]));
+                if (!records.isEmpty()) {
+                    log.warn("接手其它消费者未确认的秒杀订单 {} 条：{}", records.size(), stream);
+                    handle(stream, records);
+                }
+            }
+            if (pending.size() < count) {
+                return;
+            }
+            range = Range.of(Range.Bound.exclusive(last), Range.Bound.unbounded());
+        }
+    }
+
+    /**
+     * 裁剪所有消费组都已确认的订单
+     *
+     * @param stream
+     */
+    private void trim(String stream) {
+        Long trimmed = streamRedisTemplate.execute(trimScript, Collections.singletonList(stream));
+        if (trimmed != null && trimmed > 0) {
+            log.debug("裁剪已入库的秒杀订单 {} 条：{}", trimmed, stream);
+        }
+    }
+
+    /**
+     * 处理一批订单
+     *
+     * @param stream
+     * @param records
+     */
+    private void handle(String stream, List<MapRecord<String, Object, Object>> records) {
+        List<VoucherOrders> orders = new ArrayList<>(records.size());
+        RecordId[] ids = new RecordId[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            MapRecord<String, Object, Object> record = records.get(i);
+            ids[i] = record.getId();
+            VoucherOrders order = toOrder(record.getValue());
+            if (order == null) {
+                log.warn("忽略格式不正确的秒杀订单：{} {}", record.getId(), record.getValue());
+                continue;
+            }
+            orders.add(order);
+        }
+        if (!orders.isEmpty()) {
+            voucherOrdersMapper.saveBatch(orders);
+        }
+        streamRedisTemplate.opsForStream().acknowledge(stream, seckillOrderConfig.getGroup(), ids);
+    }
+
+    /**
+     * 解析订单
+     *
+     * @param value
+     * @return 格式不正确返回 null
+     */
+    private VoucherOrders toOrder(Map<Object, Object> value) {
+        try {
+            VoucherOrders order = new VoucherOrders();
+            order.setOrderNo((String) value.get("orderNo"));
+            order.setFkDinerId(Integer.valueOf((String) value.get("dinerId")));
+            order.setFkVoucherId(Integer.valueOf((String) value.get("voucherId")));
+            order.setOrderType(1);
+            order.setStatus(0);
+            return order.getOrderNo() == null ? null : order;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
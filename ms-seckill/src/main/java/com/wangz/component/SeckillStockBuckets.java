@@ -0,0 +1,197 @@
+package com.wangz.component;
+
+import com.wangz.config.SeckillStockConfig;
+import com.wangz.constant.RedisKeyConstant;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 秒杀库存分桶
+ * <p>
+ * 库存按分桶拆到 seckill_stock:{b分桶号}:{voucherId}，已抢购用户集合、订单 Stream 也按分桶拆分，
+ * 同一分桶的 key 使用相同的 hash tag，集群模式下落在同一个节点，秒杀脚本仍可原子执行。
+ * 食客按 ID 固定到一个分桶，在该分桶中判断是否已抢购；该分桶卖完后依次尝试其它分桶。
+ */
+@Component
+public class SeckillStockBuckets {
+
+    @Resource
+    private SeckillStockConfig seckillStockConfig;
+    @Resource
+    private RedisTemplate redisTemplate;
+
+    /**
+     * 新添加的抢购活动使用的分桶数
+     *
+     * @return
+     */
+    public int buckets() {
+        return Math.max(1, seckillStockConfig.getBuckets());
+    }
+
+    /**
+     * 食客所在的分桶
+     *
+     * @param dinerId
+     * @param buckets
+     * @return
+     */
+    public int bucketOf(Integer dinerId, int buckets) {
+        return Math.floorMod(dinerId, buckets);
+    }
+
+    /**
+     * 分桶库存 key，hash 结构，库存保存在 amount 中，与未分桶时一致
+     *
+     * @param voucherId
+     * @param bucket
+     * @return
+     */
+    public String stockKey(Integer voucherId, int bucket) {
+        return RedisKeyConstant.seckill_stock.getKey() + tag(bucket) + ":" + voucherId;
+    }
+
+    /**
+     * 分桶已抢购用户集合 key
+     *
+     * @param voucherId
+     * @param bucket
+     * @return
+     */
+    public String buyersKey(Integer voucherId, int bucket) {
+        return RedisKeyConstant.seckill_buyers.getKey() + tag(bucket) + ":" + voucherId;
+    }
+
+    /**
+     * 分桶订单 Stream key
+     *
+     * @param bucket
+     * @return
+     */
+    public String ordersKey(int bucket) {
+        return RedisKeyConstant.seckill_orders.getKey() + ":" + tag(bucket);
+    }
+
+    /**
+     * 所有需要消费的订单 Stream，包括未分桶时使用的 seckill:orders
+     *
+     * @return
+     */
+    public List<String> allOrdersKeys() {
+        List<String> keys = new ArrayList<>();
+        keys.add(RedisKeyConstant.seckill_orders.getKey());
+        // 调小分桶数后，之前的分桶 Stream 中可能还有未入库的订单
+        int buckets = buckets();
+        Set<Object> used = redisTemplate.opsForSet().members(RedisKeyConstant.seckill_stock_buckets.getKey());
+        if (used != null) {
+            for (Object value : used) {
+                buckets = Math.max(buckets, ((Number) value).intValue());
+            }
+        }
+        if (buckets > 1) {
+            for (int i = 0; i < buckets; i++) {
+                keys.add(ordersKey(i));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 记录使用过的分桶数，订单消费按使用过的最大分桶数启动
+     *
+     * @param buckets
+     */
+    public void recordBuckets(int buckets) {
+        redisTemplate.opsForSet().add(RedisKeyConstant.seckill_stock_buckets.getKey(), buckets);
+    }
+
+    /**
+     * 初始化分桶库存，余数分给编号小的分桶
+     *
+     * @param voucherId
+     * @param amount
+     * @param buckets
+     */
+    public void init(Integer voucherId, int amount, int buckets) {
+        recordBuckets(buckets);
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                for (int i = 0; i < buckets; i++) {
+                    operations.opsForHash().put((K) stockKey(voucherId, i), "amount", bucketStock(amount, buckets, i));
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 删除编号在 [from, to) 内的分桶库存和已抢购用户集合
+     *
+     * @param voucherId
+     * @param from
+     * @param to
+     */
+    public void delete(Integer voucherId, int from, int to) {
+        if (from >= to || to <= 1) {
+            return;
+        }
+        List<Object> keys = new ArrayList<>((to - from) * 2);
+        for (int i = from; i < to; i++) {
+            keys.add(stockKey(voucherId, i));
+            keys.add(buyersKey(voucherId, i));
+        }
+        redisTemplate.delete(keys);
+    }
+
+    /**
+     * 分桶的初始库存，余数分给编号小的分桶
+     *
+     * @param amount
+     * @param buckets
+     * @param bucket
+     * @return
+     */
+    public int bucketStock(int amount, int buckets, int bucket) {
+        return amount / buckets + (bucket < amount % buckets ? 1 : 0);
+    }
+
+    /**
+     * 合并读取各分桶的剩余库存
+     *
+     * @param voucherId
+     * @param buckets
+     * @return
+     */
+    public int remaining(Integer voucherId, int buckets) {
+        List<Object> stocks = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                for (int i = 0; i < buckets; i++) {
+                    operations.opsForHash().get((K) stockKey(voucherId, i), "amount");
+                }
+                return null;
+            }
+        });
+        int remaining = 0;
+        for (Object stock : stocks) {
+            if (stock instanceof Number) {
+                remaining += Math.max(0, ((Number) stock).intValue());
+            }
+        }
+        return remaining;
+    }
+
+    private String tag(int bucket) {
+        return "{b" + bucket + "}";
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.wangz.component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.wangz.constant.RedisKeyConstant;
+import com.wangz.model.pojo.SeckillVouchers;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 秒杀代金券信息本地缓存
+ * <p>
+ * 抢购期间代金券 ID、开始时间、结束时间不会变化，添加抢购活动时、SeckillVoucherPreloader 预热时或第一次访问时用 HMGET 读取后缓存；
+ * 库存以 Redis 中的 amount 为准，不在这里缓存。重新添加抢购活动时通过 SeckillLocalGate 清除；
+ * 清除通知丢失时缓存的分桶数可能已过期，秒杀脚本会拒绝按未分桶扣减已分桶活动的 amount，由 SeckillService 重新读取。
+ */
+@Component
+public class SeckillVoucherCache {
+
+    // 需要读取的字段，amount 只用于判断是否有抢购活动，buckets 为空表示未分桶
+    private static final List<Object> FIELDS = Arrays.asList("fkVoucherId", "startTime", "endTime", "amount", "buckets");
+
+    @Resource
+    private RedisTemplate redisTemplate;
+
+    private final Cache<Integer, Meta> cache = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * 获取代金券信息，没有抢购活动时返回 null
+     *
+     * @param voucherId
+     * @return
+     */
+    public Meta get(Integer voucherId) {
+        Meta meta = cache.getIfPresent(voucherId);
+        if (meta != null) {
+            return meta;
+        }
+        List<Object> values = redisTemplate.opsForHash().multiGet(
+                RedisKeyConstant.seckill_vouchers.getKey() + voucherId, FIELDS);
+        meta = toMeta(values);
+        if (meta != null) {
+            cache.put(voucherId, meta);
+        }
+        return meta;
+    }
+
+    /**
+     * 批量加载代金券信息到缓存，已缓存的也重新加载，一次往返
+     *
+     * @param voucherIds
+     * @return 加载成功的数量
+     */
+    public int prime(List<Integer> voucherIds) {
+        if (voucherIds.isEmpty()) {
+            return 0;
+        }
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                for (Integer voucherId : voucherIds) {
+                    operations.opsForHash().multiGet((K) (RedisKeyConstant.seckill_vouchers.getKey() + voucherId), FIELDS);
+                }
+                return null;
+            }
+        });
+        int primed = 0;
+        for (int i = 0; i < voucherIds.size(); i++) {
+            Meta meta = toMeta((List<Object>) results.get(i));
+            if (meta != null) {
+                cache.put(voucherIds.get(i), meta);
+                primed++;
+            }
+        }
+        return primed;
+    }
+
+    /**
+     * 添加抢购活动后直接放入缓存
+     *
+     * @param seckillVouchers
+     * @param buckets         库存分桶数
+     */
+    public void put(SeckillVouchers seckillVouchers, int buckets) {
+        cache.put(seckillVouchers.getFkVoucherId(), new Meta(seckillVouchers.getFkVoucherId(),
+                seckillVouchers.getStartTime().getTime(), seckillVouchers.getEndTime().getTime(),
+                buckets));
+    }
+
+    /**
+     * 清除缓存
+     *
+     * @param voucherId
+     */
+    public void invalidate(Integer voucherId) {
+        cache.invalidate(voucherId);
+    }
+
+    /**
+     * HMGET 结果转为代金券信息，没有抢购活动时返回 null
+     *
+     * @param values
+     * @return
+     */
+    private Meta toMeta(List<Object> values) {
+        if (values == null || values.subList(0, 4).contains(null)) {
+            return null;
+        }
+        return new Meta(((Number) values.get(0)).intValue(), toMillis(values.get(1)),
+                toMillis(values.get(2)), values.get(4) == null ? 1 : ((Number) values.get(4)).intValue());
+    }
+
+    private long toMillis(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Meta {
+
+        // 代金券 ID
+        private final int voucherId;
+        // 抢购开始时间（毫秒级时间戳）
+        private final long startTime;
+        // 抢购结束时间（毫秒级时间戳）
+        private final long endTime;
+        // 库存分桶数，为 1 时未分桶
+        private final int buckets;
+
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.wangz.component;
+
+import cn.hutool.core.bean.BeanUtil;
+import com.wangz.config.SeckillPreloadConfig;
+import com.wangz.constant.RedisKeyConstant;
+import com.wangz.mapper.SeckillVouchersMapper;
+import com.wangz.model.pojo.SeckillVouchers;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 秒杀活动预热
+ * <p>
+ * 启动时及之后每隔 interval 毫秒，用 MyBatis Cursor 流式读取 leadMinutes 分钟内开始的活动，每个代金券只取最新的一条，
+ * 按批次用 pipeline 写入 Redis：先批量判断 seckill_vouchers:{id} 是否存在，只写入不存在的活动，
+ * 写入时也使用 HSETNX；然后批量刷新本实例的代金券信息缓存，开抢时不再有缓存未命中。
+ * 每个实例都会执行，写入 Redis 是幂等的。
+ * 进行中的活动不预热：数据库中的 amount 不随抢购扣减，Redis 丢失数据后按它重建会重复售卖。
+ */
+@Slf4j
+@Component
+public class SeckillVoucherPreloader {
+
+    @Resource
+    private SeckillPreloadConfig seckillPreloadConfig;
+    @Resource
+    private SeckillVouchersMapper seckillVouchersMapper;
+    @Resource
+    private SeckillStockBuckets seckillStockBuckets;
+    @Resource
+    private SeckillVoucherCache seckillVoucherCache;
+    @Resource
+    private RedisTemplate redisTemplate;
+
+    /**
+     * 预热即将开始的活动，Cursor 需要在事务中遍历
+     */
+    @Scheduled(fixedDelayString = "${seckill.preload.interval:60000}")
+    @Transactional(readOnly = true)
+    public void preload() {
+        if (!seckillPreloadConfig.isEnabled()) {
+            return;
+        }
+        Date until = new Date(System.currentTimeMillis()
+                + TimeUnit.MINUTES.toMillis(seckillPreloadConfig.getLeadMinutes()));
+        int loaded = 0;
+        int primed = 0;
+        List<SeckillVouchers> batch = new ArrayList<>(seckillPreloadConfig.getBatchSize());
+        try (Cursor<SeckillVouchers> cursor = seckillVouchersMapper.selectUpcoming(until)) {
+            for (SeckillVouchers seckillVouchers : cursor) {
+                batch.add(seckillVouchers);
+                if (batch.size() >= seckillPreloadConfig.getBatchSize()) {
+                    loaded += load(batch);
+                    primed += prime(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                loaded += load(batch);
+                primed += prime(batch);
+            }
+        } catch (IOException e) {
+            log.warn("关闭秒杀活动游标失败：{}", e.toString());
+        } catch (Exception e) {
+            log.error("预热秒杀活动失败，下次重试", e);
+            return;
+        }
+        if (loaded > 0 || primed > 0) {
+            log.info("预热秒杀活动：写入 Redis {} 个，缓存 {} 个", loaded, primed);
+        }
+    }
+
+    /**
+     * 写入一批 Redis 中还不存在的活动
+     *
+     * @param batch
+     * @return 写入的数量
+     */
+    private int load(List<SeckillVouchers> batch) {
+        List<Object> exists = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                for (SeckillVouchers seckillVouchers : batch) {
+                    operations.hasKey((K) key(seckillVouchers));
+                }
+                return null;
+            }
+        });
+        List<SeckillVouchers> missing = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (!Boolean.TRUE.equals(exists.get(i))) {
+                missing.add(batch.get(i));
+            }
+        }
+        if (missing.isEmpty()) {
+            return 0;
+        }
+        int maxBuckets = 1;
+        for (SeckillVouchers seckillVouchers : missing) {
+            maxBuckets = Math.max(maxBuckets, Math.min(seckillStockBuckets.buckets(), seckillVouchers.getAmount()));
+        }
+        if (maxBuckets > 1) {
+            seckillStockBuckets.recordBuckets(maxBuckets);
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                for (SeckillVouchers seckillVouchers : missing) {
+                    Integer voucherId = seckillVouchers.getFkVoucherId();
+                    int amount = seckillVouchers.getAmount();
+                    // 与新增抢购活动时的分桶方式一致，分桶时 amount 保留初始库存
+                    int buckets = Math.min(seckillStockBuckets.buckets(), amount);
+                    Map<String, Object> map = BeanUtil.beanToMap(seckillVouchers, false, true);
+                    if (buckets > 1) {
+                        map.put("buckets", buckets);
+                        for (int i = 0; i < buckets; i++) {
+                            operations.opsForHash().putIfAbsent((K) seckillStockBuckets.stockKey(voucherId, i),
+                                    "amount", seckillStockBuckets.bucketStock(amount, buckets, i));
+                        }
+                    }
+                    for (Map.Entry<String, Object> entry : map.entrySet()) {
+                        operations.opsForHash().putIfAbsent((K) key(seckillVouchers), entry.getKey(), entry.getValue());
+                    }
+                }
+                return null;
+            }
+        });
+        return missing.size();
+    }
+
+    /**
+     * 刷新一批活动的本地缓存
+     *
+     * @param batch
+     * @return 缓存的数量
+     */
+    private int prime(List<SeckillVouchers> batch) {
+        List<Integer> voucherIds = new ArrayList<>(batch.size());
+        for (SeckillVouchers seckillVouchers : batch) {
+            voucherIds.add(seckillVouchers.getFkVoucherId());
+        }
+        return seckillVoucherCache.prime(voucherIds);
+    }
+
+    private String key(SeckillVouchers seckillVouchers) {
+        return RedisKeyConstant.seckill_vouchers.getKey() + seckillVouchers.getFkVoucherId();
+    }
+
+}
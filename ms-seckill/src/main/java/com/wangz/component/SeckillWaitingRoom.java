@@ -0,0 +1,231 @@
+package com.wangz.component;
+
+import com.wangz.config.SeckillQueueConfig;
+import com.wangz.constant.ApiConstant;
+import com.wangz.exception.ParameterException;
+import com.wangz.model.domain.ResultInfo;
+import com.wangz.utils.ResultInfoUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 秒杀排队
+ * <p>
+ * 每个代金券一个有界队列，请求按到达顺序入队，队列满时直接拒绝。
+ * 固定大小的线程池处理各队列，同一个代金券同时只有一个线程在处理，保证先到先得；
+ * 处理结果连同食客 ID 写入 Redis（seckill:result:{排队凭证}），任一实例都可以查询，只有本人能查到结果；
+ * 入队前先在同一个 key 写入排队中标记，凭证不存在、已过期或实例宕机丢失的请求在标记过期后查询到的是明确的失败，不会一直排队中。
+ * 无论请求多少，同时访问 Redis 的线程数不超过 workers，排队占用的内存不超过 capacity；队列处理完后移除。
+ */
+@Slf4j
+@Component
+public class SeckillWaitingRoom {
+
+    // 排队中
+    public static final int QUEUED_CODE = 2;
+    public static final String QUEUED_MESSAGE = "排队中";
+    public static final String FULL_MESSAGE = "排队人数过多，请稍后再试";
+    public static final String NOT_FOUND_MESSAGE = "排队凭证不存在或已过期";
+
+    private static final String RESULT_KEY = "seckill:result:";
+
+    @Resource
+    private SeckillQueueConfig seckillQueueConfig;
+    @Resource
+    private RedisTemplate redisTemplate;
+
+    // key：代金券 ID value：排队队列
+    private final Map<Integer, Lane> lanes = new ConcurrentHashMap<>();
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger index = new AtomicInteger();
+        // 任务数不超过代金券数，任务队列不需要限制大小
+        executor = new ThreadPoolExecutor(seckillQueueConfig.getWorkers(), seckillQueueConfig.getWorkers(),
+                0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "seckill-waiting-room-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /**
+     * 入队
+     *
+     * @param voucherId
+     * @param dinerId   食客 ID，查询结果时校验
+     * @param ticket    排队凭证
+     * @param path      请求路径，写入结果
+     * @param attempt   抢购处理
+     * @return 队列已满返回 false，同时删除排队中标记
+     */
+    public boolean offer(Integer voucherId, Integer dinerId, String ticket, String path,
+                         Supplier<ResultInfo> attempt) {
+        Attempt pending = new Attempt(dinerId, ticket, path, attempt);
+        // 先写排队中标记再入队，避免覆盖已处理完的结果
+        redisTemplate.opsForValue().set(RESULT_KEY + ticket,
+                toMap(dinerId, ResultInfoUtil.build(QUEUED_CODE, QUEUED_MESSAGE, path, ticket)),
+                seckillQueueConfig.getResultTtl(), TimeUnit.SECONDS);
+        AtomicBoolean offered = new AtomicBoolean();
+        // 与移除空队列互斥，避免入队到已移除的队列
+        Lane lane = lanes.compute(voucherId, (id, current) -> {
+            Lane target = current != null ? current : new Lane(id, seckillQueueConfig.getCapacity());
+            offered.set(target.queue.offer(pending));
+            return target;
+        });
+        if (!offered.get()) {
+            redisTemplate.delete(RESULT_KEY + ticket);
+            return false;
+        }
+        schedule(lane);
+        return true;
+    }
+
+    /**
+     * 查询抢购结果
+     *
+     * @param ticket
+     * @param dinerId 查询的食客 ID，与排队的食客不一致时视为不存在
+     * @param path
+     * @return 还没有处理时返回排队中，排队中标记和结果都不存在时返回失败
+     */
+    public ResultInfo result(String ticket, Integer dinerId, String path) {
+        Map<String, Object> result = (Map<String, Object>) redisTemplate.opsForValue().get(RESULT_KEY + ticket);
+        if (result == null || !dinerId.equals(result.get("dinerId"))) {
+            return ResultInfoUtil.buildError(ApiConstant.ERROR_CODE, NOT_FOUND_MESSAGE, path);
+        }
+        return ResultInfoUtil.build((Integer) result.get("code"), (String) result.get("message"), path,
+                result.get("data"));
+    }
+
+    /**
+     * 队列没有线程在处理时提交处理任务
+     *
+     * @param lane
+     */
+    private void schedule(Lane lane) {
+        if (lane.scheduled.compareAndSet(false, true)) {
+            executor.execute(() -> drain(lane));
+        }
+    }
+
+    /**
+     * 按顺序处理一批请求，还有剩余时重新提交，让其它代金券的队列也能得到处理
+     *
+     * @param lane
+     */
+    private void drain(Lane lane) {
+        try {
+            for (int i = 0; i < seckillQueueConfig.getDrainBatch(); i++) {
+                Attempt attempt = lane.queue.poll();
+                if (attempt == null) {
+                    break;
+                }
+                handle(attempt);
+            }
+        } finally {
+            lane.scheduled.set(false);
+            // 释放标记后可能有新请求入队，没有时移除队列
+            if (!lane.queue.isEmpty()) {
+                schedule(lane);
+            } else {
+                lanes.computeIfPresent(lane.voucherId, (id, current) ->
+                        current == lane && current.queue.isEmpty() && !current.scheduled.get() ? null : current);
+            }
+        }
+    }
+
+    /**
+     * 处理一个请求并保存结果
+     *
+     * @param attempt
+     */
+    private void handle(Attempt attempt) {
+        ResultInfo resultInfo;
+        try {
+            resultInfo = attempt.action.get();
+        } catch (ParameterException e) {
+            resultInfo = ResultInfoUtil.buildError(e.getErrorCode(), e.getMessage(), attempt.path);
+        } catch (Exception e) {
+            log.error("处理排队的抢购请求失败：{}", attempt.ticket, e);
+            resultInfo = ResultInfoUtil.buildError(attempt.path);
+        }
+        try {
+            redisTemplate.opsForValue().set(RESULT_KEY + attempt.ticket, toMap(attempt.dinerId, resultInfo),
+                    seckillQueueConfig.getResultTtl(), TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.error("保存抢购结果失败：{}", attempt.ticket, e);
+        }
+    }
+
+    private Map<String, Object> toMap(Integer dinerId, ResultInfo resultInfo) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("dinerId", dinerId);
+        result.put("code", resultInfo.getCode());
+        result.put("message", resultInfo.getMessage());
+        if (resultInfo.getData() != null) {
+            result.put("data", resultInfo.getData());
+        }
+        return result;
+    }
+
+    /**
+     * 一个代金券的排队队列
+     */
+    private static class Lane {
+
+        private final Integer voucherId;
+        private final BlockingQueue<Attempt> queue;
+        // 是否已有线程在处理
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Lane(Integer voucherId, int capacity) {
+            this.voucherId = voucherId;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+    }
+
+    /**
+     * 排队的抢购请求
+     */
+    private static class Attempt {
+
+        private final Integer dinerId;
+        private final String ticket;
+        private final String path;
+        private final Supplier<ResultInfo> action;
+
+        Attempt(Integer dinerId, String ticket, String path, Supplier<ResultInfo> action) {
+            this.dinerId = dinerId;
+            this.ticket = ticket;
+            this.path = path;
+            this.action = action;
+        }
+
+    }
+
+}
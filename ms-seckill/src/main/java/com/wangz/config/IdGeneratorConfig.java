@@ -0,0 +1,20 @@
+package com.wangz.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 订单编号生成配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "seckill.id")
+public class IdGeneratorConfig {
+
+    // workerId 租期，单位秒，每 1/3 租期续约一次
+    private int leaseSeconds = 30;
+    // 序号条带数，按线程分散 CAS 竞争
+    private int stripes = 4;
+
+}
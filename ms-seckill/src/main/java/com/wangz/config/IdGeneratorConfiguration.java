@@ -0,0 +1,29 @@
+package com.wangz.config;
+
+import com.wangz.component.IdGenerator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import javax.annotation.Resource;
+
+@Configuration
+public class IdGeneratorConfiguration {
+
+    @Resource
+    private IdGeneratorConfig idGeneratorConfig;
+
+    /**
+     * 订单编号生成器，workerId 在 Redis 中租用
+     *
+     * @param redisConnectionFactory
+     * @return
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public IdGenerator orderNoGenerator(RedisConnectionFactory redisConnectionFactory) {
+        return new IdGenerator(new StringRedisTemplate(redisConnectionFactory), "seckill",
+                idGeneratorConfig.getLeaseSeconds(), idGeneratorConfig.getStripes());
+    }
+
+}
@@ -1,9 +1,12 @@
 package com.wangz.config;
 
+import com.wangz.model.FencedRedisLock;
 import com.wangz.model.RedisLock;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
 import javax.annotation.Resource;
 
@@ -18,4 +21,17 @@ public class RedisLockConfiguration {
         RedisLock redisLock = new RedisLock(redisTemplate);
         return redisLock;
     }
-}
\ No newline at end of file
+
+    /**
+     * 带续约和 fencing token 的分布式锁，租期 30 秒，添加抢购活动时跨实例互斥
+     *
+     * @param stringRedisTemplate
+     * @param redisMessageListenerContainer
+     * @return
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public FencedRedisLock fencedRedisLock(StringRedisTemplate stringRedisTemplate,
+                                           RedisMessageListenerContainer redisMessageListenerContainer) {
+        return new FencedRedisLock(stringRedisTemplate, redisMessageListenerContainer, 30000);
+    }
+}
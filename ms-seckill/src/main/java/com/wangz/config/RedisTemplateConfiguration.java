@@ -9,6 +9,7 @@ import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
@@ -44,13 +45,44 @@ public class RedisTemplateConfiguration {
         return redisTemplate;
     }
 
+    /**
+     * Redis 发布订阅监听容器
+     *
+     * @param redisConnectionFactory
+     * @return
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        return container;
+    }
+
+    @Bean
+    public DefaultRedisScript<Long> seckillScript() {
+        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
+        // 校验是否已抢购、扣库存、写入订单 Stream
+        redisScript.setLocation(new ClassPathResource("seckill.lua"));
+        redisScript.setResultType(Long.class);
+        return redisScript;
+    }
+
+    @Bean
+    public DefaultRedisScript<Long> seckillFallbackScript() {
+        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
+        // 食客所在分桶卖完后从其它分桶扣库存
+        redisScript.setLocation(new ClassPathResource("seckill_fallback.lua"));
+        redisScript.setResultType(Long.class);
+        return redisScript;
+    }
+
     @Bean
-    public DefaultRedisScript<Long> stockScript() {
+    public DefaultRedisScript<Long> seckillPublishScript() {
         DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
-        //放在和application.yml 同层目录下
-        redisScript.setLocation(new ClassPathResource("stock.lua"));
+        // 校验 fencing token 后写入抢购活动
+        redisScript.setLocation(new ClassPathResource("seckill_publish.lua"));
         redisScript.setResultType(Long.class);
         return redisScript;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,21 @@
+package com.wangz.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 秒杀本地拦截配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "seckill.gate")
+public class SeckillGateConfig {
+
+    // 是否开启本地令牌，开启后每个实例放行到 Redis 的请求数不超过剩余库存 * permitFactor
+    private boolean permitsEnabled = false;
+
+    // 本地令牌数与剩余库存的倍数，大于 1 时为其它实例未卖出的库存留出余量
+    private double permitFactor = 1.5;
+
+}
@@ -0,0 +1,36 @@
+package com.wangz.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 秒杀订单异步入库配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "seckill.order")
+public class SeckillOrderConfig {
+
+    // 消费组
+    private String group = "ms-seckill";
+
+    // 消费者名称，每个实例唯一且重启后不变，重启后继续处理自己未确认的订单
+    private String consumer = "ms-seckill";
+
+    // 每批最多入库的订单数
+    private int batchSize = 500;
+
+    // 没有订单时阻塞等待的时间，单位毫秒
+    private long blockMillis = 2000;
+
+    // 裁剪已确认订单的间隔，单位毫秒，未确认的订单不会被裁剪
+    private long trimInterval = 60000;
+
+    // 其它消费者未确认的订单超过该时间后由本消费者接手，单位毫秒
+    private long claimIdleMillis = 60000;
+
+    // 检查需要接手的订单、新增分桶 Stream 的间隔，单位毫秒
+    private long claimInterval = 30000;
+
+}
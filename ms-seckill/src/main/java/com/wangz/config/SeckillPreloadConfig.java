@@ -0,0 +1,24 @@
+package com.wangz.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 秒杀活动预热配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "seckill.preload")
+public class SeckillPreloadConfig {
+
+    // 是否开启预热
+    private boolean enabled = true;
+    // 预热间隔，单位毫秒，启动时立即执行一次
+    private long interval = 60000;
+    // 提前多少分钟预热
+    private int leadMinutes = 5;
+    // 每批写入 Redis 的活动数
+    private int batchSize = 500;
+
+}
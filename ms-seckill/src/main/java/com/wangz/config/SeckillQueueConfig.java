@@ -0,0 +1,26 @@
+package com.wangz.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 秒杀排队配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "seckill.queue")
+public class SeckillQueueConfig {
+
+    // 是否开启排队，开启后下单请求只做校验并入队，立即返回排队凭证
+    private boolean enabled = false;
+    // 每个代金券的排队上限，队列满时直接拒绝
+    private int capacity = 10000;
+    // 处理排队请求的线程数，所有代金券共用
+    private int workers = 8;
+    // 每次连续处理同一个代金券的请求数，处理完让出线程给其它代金券
+    private int drainBatch = 100;
+    // 排队中标记和抢购结果保留时间，单位秒，超过该时间仍未处理的请求查询时视为已过期
+    private int resultTtl = 600;
+
+}
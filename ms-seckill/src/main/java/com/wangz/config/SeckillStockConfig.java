@@ -0,0 +1,18 @@
+package com.wangz.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 秒杀库存分桶配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "seckill.stock")
+public class SeckillStockConfig {
+
+    // 新添加的抢购活动库存分桶数，为 1 时库存保存在 seckill_vouchers:{id} 的 amount 中；调小后使用过的分桶 Stream 仍会被消费
+    private int buckets = 1;
+
+}
@@ -1,9 +1,11 @@
 package com.wangz.controller;
 
+import com.wangz.component.IdGenerator;
 import com.wangz.model.domain.ResultInfo;
 import com.wangz.model.pojo.SeckillVouchers;
 import com.wangz.utils.ResultInfoUtil;
 import com.wangz.service.SeckillService;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -21,6 +23,8 @@ public class SeckillController {
     @Resource
     private SeckillService seckillService;
     @Resource
+    private IdGenerator orderNoGenerator;
+    @Resource
     private HttpServletRequest request;
     /**
      * 秒杀下单
@@ -35,6 +39,40 @@ public class SeckillController {
         return resultInfo;
     }
 
+    /**
+     * 查询排队的抢购结果
+     *
+     * @param ticket       排队凭证
+     * @param access_token
+     * @return
+     */
+    @GetMapping("result/{ticket}")
+    public ResultInfo findSeckillResult(@PathVariable String ticket, String access_token) {
+        return seckillService.findSeckillResult(ticket, access_token, request.getServletPath());
+    }
+
+    /**
+     * 查询剩余库存
+     *
+     * @param voucherId
+     * @return
+     */
+    @GetMapping("stock/{voucherId}")
+    public ResultInfo<Integer> findRemainingStock(@PathVariable Integer voucherId) {
+        int stock = seckillService.findRemainingStock(voucherId);
+        return ResultInfoUtil.buildSuccess(request.getServletPath(), stock);
+    }
+
+    /**
+     * 订单编号生成统计
+     *
+     * @return
+     */
+    @GetMapping("id/stats")
+    public ResultInfo<IdGenerator.Stats> idStats() {
+        return ResultInfoUtil.buildSuccess(request.getServletPath(), orderNoGenerator.stats());
+    }
+
     /**
      * 新增秒杀活动
      *
@@ -2,6 +2,9 @@ package com.wangz.mapper;
 
 import com.wangz.model.pojo.SeckillVouchers;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.cursor.Cursor;
+
+import java.util.Date;
 
 /**
  * 秒杀代金券 Mapper
@@ -19,6 +22,14 @@ public interface SeckillVouchersMapper {
             " from t_seckill_vouchers where fk_voucher_id = #{voucherId}")
     SeckillVouchers selectVoucher(Integer voucherId);
 
+    // 流式查询即将开始的秒杀活动，每个代金券只取最新的一条，需要在事务中遍历
+    @Select("select s.id, s.fk_voucher_id, s.amount, s.start_time, s.end_time, s.is_valid " +
+            " from t_seckill_vouchers s where s.is_valid = 1 and s.start_time > now() and s.start_time <= #{until} " +
+            " and not exists (select 1 from t_seckill_vouchers n " +
+            " where n.fk_voucher_id = s.fk_voucher_id and n.is_valid = 1 and n.id > s.id)")
+    @Options(fetchSize = Integer.MIN_VALUE)
+    Cursor<SeckillVouchers> selectUpcoming(@Param("until") Date until);
+
     // 减库存
     @Update("update t_seckill_vouchers set amount = amount - 1 " +
             " where id = #{seckillId}")
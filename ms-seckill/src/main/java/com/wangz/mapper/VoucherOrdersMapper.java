@@ -5,12 +5,14 @@ import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.List;
+
 /**
  * 代金券订单 Mapper
  */
 public interface VoucherOrdersMapper {
 
-    // 根据食客 ID 和秒杀 ID 查询代金券订单
+    // 根据食客 ID 和秒杀 ID 查询代金券订单，秒杀下单已改为 Redis 已抢购用户集合判断，这里用于对账
     @Select("select id, order_no, fk_voucher_id, fk_diner_id, qrcode, payment," +
             " status, fk_seckill_id, order_type, create_date, update_date, " +
             " is_valid from t_voucher_orders where fk_diner_id = #{dinerId} " +
@@ -25,4 +27,15 @@ public interface VoucherOrdersMapper {
             " #{orderType}, now(), now(), 1)")
     int save(VoucherOrders voucherOrders);
 
+    // 批量新增代金券订单，订单编号已存在的跳过
+    @Insert("<script> " +
+            " insert ignore into t_voucher_orders (order_no, fk_voucher_id, fk_diner_id, " +
+            " status, fk_seckill_id, order_type, create_date, update_date, is_valid) values " +
+            " <foreach item=\"item\" collection=\"list\" separator=\",\"> " +
+            "   (#{item.orderNo}, #{item.fkVoucherId}, #{item.fkDinerId}, #{item.status}, #{item.fkSeckillId}, " +
+            "   #{item.orderType}, now(), now(), 1) " +
+            " </foreach> " +
+            " </script>")
+    int saveBatch(@Param("list") List<VoucherOrders> list);
+
 }
\ No newline at end of file
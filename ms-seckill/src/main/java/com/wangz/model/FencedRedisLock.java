@@ -0,0 +1,301 @@
+package com.wangz.model;
+
+import cn.hutool.core.util.IdUtil;
+import com.wangz.constant.RedisKeyConstant;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 带 fencing token 的 Redis 分布式锁
+ * <p>
+ * 1. 加锁用 SET NX PX，同时 INCR 计数器得到单调递增的 fencing token 返回给调用方，
+ * 被保护的资源只接受不小于已见最大 token 的写入，持有者因停顿丢锁后的写入会被拒绝；
+ * 2. 持有期间由共享的看门狗线程每 1/3 租期续约一次，续约发现锁已被其它持有者占用时标记为丢失，
+ * 调用方通过 Lease#isHeld 判断；
+ * 3. tryLockAsync 不轮询，释放锁时发布通知，等待者收到通知或锁到期时再尝试一次。
+ * 锁不可重入，每次加锁使用唯一的持有者标识，不与线程绑定，可以在其它线程释放。
+ * 由配置类注册为 Bean。
+ */
+@Slf4j
+public class FencedRedisLock implements MessageListener {
+
+    // 释放通知频道，消息为锁名称
+    private static final String RELEASED_CHANNEL = RedisKeyConstant.lock_key.getKey() + "released";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    // 租期，单位毫秒
+    private final long leaseMillis;
+    private final DefaultRedisScript<Long> lockScript = script("fenced_lock.lua");
+    private final DefaultRedisScript<Long> renewScript = script("fenced_renew.lua");
+    private final DefaultRedisScript<Long> unlockScript = script("fenced_unlock.lua");
+
+    // 看门狗和等待重试共用的调度线程
+    private ScheduledExecutorService scheduler;
+    // key：锁名称 value：等待该锁的请求
+    private final Map<String, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+
+    /**
+     * @param redisTemplate
+     * @param listenerContainer
+     * @param leaseMillis       租期，单位毫秒
+     */
+    public FencedRedisLock(StringRedisTemplate redisTemplate, RedisMessageListenerContainer listenerContainer,
+                           long leaseMillis) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.leaseMillis = Math.max(3000, leaseMillis);
+    }
+
+    public void start() {
+        scheduler = Executors.newScheduledThreadPool(2, r -> {
+            Thread thread = new Thread(r, "fenced-redis-lock");
+            thread.setDaemon(true);
+            return thread;
+        });
+        listenerContainer.addMessageListener(this, new ChannelTopic(RELEASED_CHANNEL));
+    }
+
+    public void stop() {
+        listenerContainer.removeMessageListener(this);
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 尝试加锁，不等待
+     *
+     * @param lockName 锁名称
+     * @return 加锁失败返回 null
+     */
+    public Lease tryLock(String lockName) {
+        String owner = IdUtil.fastSimpleUUID();
+        Long result = redisTemplate.execute(lockScript, keys(lockName), owner, String.valueOf(leaseMillis));
+        if (result == null || result <= 0) {
+            return null;
+        }
+        return new Lease(lockName, owner, result);
+    }
+
+    /**
+     * 异步加锁，锁被占用时等待释放通知，不轮询
+     *
+     * @param lockName   锁名称
+     * @param waitMillis 最长等待时间，单位毫秒
+     * @return 超时完成为 null
+     */
+    public CompletableFuture<Lease> tryLockAsync(String lockName, long waitMillis) {
+        CompletableFuture<Lease> future = new CompletableFuture<>();
+        attempt(lockName, future, System.currentTimeMillis() + waitMillis);
+        return future;
+    }
+
+    /**
+     * 释放锁
+     *
+     * @param lease
+     * @return 锁已丢失返回 false
+     */
+    public boolean unlock(Lease lease) {
+        lease.stopRenewal();
+        if (!lease.held.getAndSet(false)) {
+            return false;
+        }
+        Long result = redisTemplate.execute(unlockScript, Collections.singletonList(lockKey(lease.name)),
+                lease.owner, RELEASED_CHANNEL, lease.name);
+        return result != null && result == 1;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String lockName = new String(message.getBody(), StandardCharsets.UTF_8);
+        Set<Waiter> waiting = waiters.remove(lockName);
+        if (waiting != null) {
+            for (Waiter waiter : waiting) {
+                scheduler.execute(waiter::fire);
+            }
+        }
+    }
+
+    /**
+     * 尝试一次，失败后登记等待，收到释放通知或锁到期时再尝试
+     *
+     * @param lockName
+     * @param future
+     * @param deadline 等待截止时间（毫秒级时间戳）
+     */
+    private void attempt(String lockName, CompletableFuture<Lease> future, long deadline) {
+        if (future.isDone()) {
+            return;
+        }
+        // 先登记再加锁，避免错过两者之间的释放通知
+        Waiter waiter = new Waiter(lockName, future, deadline);
+        waiters.computeIfAbsent(lockName, name -> ConcurrentHashMap.newKeySet()).add(waiter);
+        try {
+            String owner = IdUtil.fastSimpleUUID();
+            Long result = redisTemplate.execute(lockScript, keys(lockName), owner, String.valueOf(leaseMillis));
+            if (result != null && result > 0) {
+                waiter.cancel();
+                Lease lease = new Lease(lockName, owner, result);
+                if (!future.complete(lease)) {
+                    // 调用方已取消
+                    unlock(lease);
+                }
+                return;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                waiter.cancel();
+                future.complete(null);
+                return;
+            }
+            // 持有者崩溃时没有释放通知，锁到期后再尝试
+            long ttl = result == null ? remaining : -result;
+            waiter.timer = scheduler.schedule(waiter::fire, Math.min(ttl, remaining), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            waiter.cancel();
+            future.completeExceptionally(e);
+        }
+    }
+
+    private List<String> keys(String lockName) {
+        String lockKey = lockKey(lockName);
+        return Arrays.asList(lockKey, lockKey + ":fence");
+    }
+
+    // 使用 hash tag，锁和计数器在集群中位于同一个节点
+    private String lockKey(String lockName) {
+        return RedisKeyConstant.lock_key.getKey() + "{" + lockName + "}";
+    }
+
+    private static DefaultRedisScript<Long> script(String location) {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(location));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    /**
+     * 等待中的异步加锁请求，释放通知和到期重试只触发一次
+     */
+    private class Waiter {
+
+        private final String lockName;
+        private final CompletableFuture<Lease> future;
+        private final long deadline;
+        private final AtomicBoolean fired = new AtomicBoolean();
+        private volatile ScheduledFuture<?> timer;
+
+        Waiter(String lockName, CompletableFuture<Lease> future, long deadline) {
+            this.lockName = lockName;
+            this.future = future;
+            this.deadline = deadline;
+        }
+
+        void fire() {
+            if (fired.compareAndSet(false, true)) {
+                cancel();
+                attempt(lockName, future, deadline);
+            }
+        }
+
+        void cancel() {
+            Set<Waiter> waiting = waiters.get(lockName);
+            if (waiting != null) {
+                waiting.remove(this);
+            }
+            ScheduledFuture<?> current = timer;
+            if (current != null) {
+                current.cancel(false);
+            }
+        }
+
+    }
+
+    /**
+     * 一次加锁的租约，持有期间自动续约
+     */
+    public class Lease implements AutoCloseable {
+
+        @Getter
+        private final String name;
+        private final String owner;
+        // 单调递增，越大表示越晚获得锁
+        @Getter
+        private final long fencingToken;
+        private final AtomicBoolean held = new AtomicBoolean(true);
+        private final ScheduledFuture<?> renewal;
+        // 租约本地到期时间（毫秒级时间戳），续约请求失败期间以此判断是否仍持有
+        private volatile long expireAt;
+
+        Lease(String name, String owner, long fencingToken) {
+            this.name = name;
+            this.owner = owner;
+            this.fencingToken = fencingToken;
+            this.expireAt = System.currentTimeMillis() + leaseMillis;
+            long period = leaseMillis / 3;
+            this.renewal = scheduler.scheduleAtFixedRate(this::renew, period, period, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * 是否仍持有锁，续约发现锁已丢失或租约已过期时返回 false
+         *
+         * @return
+         */
+        public boolean isHeld() {
+            return held.get() && System.currentTimeMillis() < expireAt;
+        }
+
+        @Override
+        public void close() {
+            unlock(this);
+        }
+
+        private void renew() {
+            if (!held.get()) {
+                stopRenewal();
+                return;
+            }
+            long now = System.currentTimeMillis();
+            try {
+                Long result = redisTemplate.execute(renewScript, Collections.singletonList(lockKey(name)),
+                        owner, String.valueOf(leaseMillis));
+                if (result != null && result == 1) {
+                    expireAt = now + leaseMillis;
+                    return;
+                }
+                log.warn("锁 {} 已丢失，fencing token {}", name, fencingToken);
+                held.set(false);
+                stopRenewal();
+            } catch (Exception e) {
+                log.warn("锁 {} 续约失败，稍后重试：{}", name, e.toString());
+            }
+        }
+
+        private void stopRenewal() {
+            renewal.cancel(false);
+        }
+
+    }
+
+}
@@ -2,33 +2,31 @@ package com.wangz.service;
 
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.IdUtil;
-import cn.hutool.core.util.StrUtil;
-import com.wangz.constant.ApiConstant;
+import com.wangz.component.IdGenerator;
+import com.wangz.component.SeckillLocalGate;
+import com.wangz.component.SeckillStockBuckets;
+import com.wangz.component.SeckillVoucherCache;
+import com.wangz.component.SeckillWaitingRoom;
+import com.wangz.component.SignInDinerInfoResolver;
+import com.wangz.config.SeckillQueueConfig;
 import com.wangz.constant.RedisKeyConstant;
-import com.wangz.exception.ParameterException;
-import com.wangz.mapper.VoucherOrdersMapper;
-import com.wangz.model.RedisLock;
 import com.wangz.model.domain.ResultInfo;
 import com.wangz.model.pojo.SeckillVouchers;
-import com.wangz.model.pojo.VoucherOrders;
 import com.wangz.model.vo.SignInDinerInfo;
 import com.wangz.utils.AssertUtil;
 import com.wangz.mapper.SeckillVouchersMapper;
+import com.wangz.model.FencedRedisLock;
 
 import com.wangz.utils.ResultInfoUtil;
-import org.redisson.api.RLock;
-import org.redisson.api.RedissonClient;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.transaction.interceptor.TransactionAspectSupport;
-import org.springframework.web.client.RestTemplate;
 
 import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 
 /**
  * 秒杀业务逻辑层
@@ -39,127 +37,270 @@ public class SeckillService {
     @Resource
     private SeckillVouchersMapper seckillVouchersMapper;
     @Resource
-    private VoucherOrdersMapper voucherOrdersMapper;
-    @Value("${service.name.ms-oauth-server}")
-    private String oauthServerName;
-    @Resource
-    private RestTemplate restTemplate;
+    private SignInDinerInfoResolver signInDinerInfoResolver;
     @Resource
     private RedisTemplate redisTemplate;
     @Resource
-    private DefaultRedisScript defaultRedisScript;
+    private DefaultRedisScript<Long> seckillScript;
+    @Resource
+    private DefaultRedisScript<Long> seckillFallbackScript;
+    @Resource
+    private DefaultRedisScript<Long> seckillPublishScript;
+    @Resource
+    private FencedRedisLock fencedRedisLock;
+    @Resource
+    private SeckillStockBuckets seckillStockBuckets;
     @Resource
-    private RedisLock redisLock;
+    private IdGenerator orderNoGenerator;
     @Resource
-    private RedissonClient redissonClient;
+    private SeckillWaitingRoom seckillWaitingRoom;
+    @Resource
+    private SeckillQueueConfig seckillQueueConfig;
+    @Resource
+    private SeckillLocalGate seckillLocalGate;
+    @Resource
+    private SeckillVoucherCache seckillVoucherCache;
+
+    // 秒杀脚本返回值：没有抢购活动
+    private static final long SECKILL_NOT_FOUND = -1;
+    // 秒杀脚本返回值：已抢购
+    private static final long SECKILL_BOUGHT = -2;
+    // 秒杀脚本返回值：已卖完并已预占
+    private static final long SECKILL_RESERVED = -3;
+    // 秒杀脚本返回值：活动已分桶，本地缓存的分桶数已过期
+    private static final long SECKILL_STALE = -4;
+    // 秒杀脚本返回值：已卖完
+    private static final long SECKILL_SOLD_OUT = 0;
+    // 秒杀脚本返回值：抢购成功
+    private static final long SECKILL_SUCCESS = 1;
+
     /**
      * 抢购代金券
+     * <p>
+     * 是否已抢购、扣库存在 Redis 中由一个 Lua 脚本原子完成，抢购成功的订单写入 seckill:orders，
+     * 由 SeckillOrderDispatcher 批量入库，下单请求不再访问数据库，也不需要加锁。
+     * 开启排队后校验通过的请求进入 SeckillWaitingRoom，返回排队凭证，结果通过 result/{ticket} 查询。
      *
      * @param voucherId   代金券 ID
      * @param accessToken 登录token
      * @Para path 访问路径
      */
-    @Transactional(rollbackFor = Exception.class)
     public ResultInfo doSeckill(Integer voucherId, String accessToken, String path) {
         // 基本参数校验
         AssertUtil.isTrue(voucherId == null || voucherId < 0, "请选择需要抢购的代金券");
         AssertUtil.isNotEmpty(accessToken, "请登录");
+        // 本地已知卖完、结束、未开始时直接拒绝，不再访问 Redis 和授权服务
+        String reason = seckillLocalGate.rejectReason(voucherId);
+        if (reason != null) {
+            return ResultInfoUtil.buildError(0, reason, path);
+        }
 
         // 注释原始的 关系型数据库 的流程
         // 判断此代金券是否加入抢购
-//         SeckillVouchers seckillVouchers = seckillVouchersMapper.selectVoucher(voucherId);
-//         AssertUtil.isTrue(seckillVouchers == null, "该代金券并未有抢购活动");
+//         SeckillVouchers voucherMeta = voucherMetaMapper.selectVoucher(voucherId);
+//         AssertUtil.isTrue(voucherMeta == null, "该代金券并未有抢购活动");
         // 判断是否有效
-//         AssertUtil.isTrue(seckillVouchers.getIsValid() == 0, "该活动已结束");
+//         AssertUtil.isTrue(voucherMeta.getIsValid() == 0, "该活动已结束");
 
-        // 采用 Redis 实现  从redis里面取对象信息
-        String key = RedisKeyConstant.seckill_vouchers.getKey() + voucherId;
-        Map<String, Object> map = redisTemplate.opsForHash().entries(key);
-        SeckillVouchers seckillVouchers = BeanUtil.mapToBean(map, SeckillVouchers.class, true, null);
+        // 采用 Redis 实现  代金券信息抢购期间不变，使用本地缓存，库存以 Redis 为准由秒杀脚本判断
+        SeckillVoucherCache.Meta voucherMeta = seckillVoucherCache.get(voucherId);
+        AssertUtil.isTrue(voucherMeta == null, "该代金券并未有抢购活动");
 
         // 判断是否开始、结束
-        Date now = new Date();
-        AssertUtil.isTrue(now.before(seckillVouchers.getStartTime()), "该抢购还未开始");
-        AssertUtil.isTrue(now.after(seckillVouchers.getEndTime()), "该抢购已结束");
-        // 判断是否卖完
-        AssertUtil.isTrue(seckillVouchers.getAmount() < 1, "该券已经卖完了");
-        // 获取登录用户信息
-        String url = oauthServerName + "user/me?access_token={accessToken}";
-        ResultInfo resultInfo = restTemplate.getForObject(url, ResultInfo.class, accessToken);
-        if (resultInfo.getCode() != ApiConstant.SUCCESS_CODE) {
-            resultInfo.setPath(path);
-            return resultInfo;
+        long now = System.currentTimeMillis();
+        if (now < voucherMeta.getStartTime()) {
+            seckillLocalGate.markNotStarted(voucherId, voucherMeta.getStartTime());
+            return ResultInfoUtil.buildError(0, SeckillLocalGate.NOT_STARTED_MESSAGE, path);
         }
-        // 这里的data是一个LinkedHashMap，SignInDinerInfo
-        SignInDinerInfo dinerInfo = BeanUtil.fillBeanWithMap((LinkedHashMap) resultInfo.getData(),
-                new SignInDinerInfo(), false);
-        // 判断登录用户是否已抢到(一个用户针对这次活动只能买一次)
-        VoucherOrders order = voucherOrdersMapper.findDinerOrder(dinerInfo.getId(),
-                seckillVouchers.getFkVoucherId());
-        AssertUtil.isTrue(order != null, "该用户已抢到该代金券，无需再抢");
+        if (now > voucherMeta.getEndTime()) {
+            seckillLocalGate.markEnded(voucherId);
+            return ResultInfoUtil.buildError(0, SeckillLocalGate.ENDED_MESSAGE, path);
+        }
+        // 获取登录用户信息
+        SignInDinerInfo dinerInfo = signInDinerInfoResolver.resolve(accessToken);
+        String orderNo = orderNoGenerator.nextIdStr();
+        Integer dinerId = dinerInfo.getId();
 
-        // 注释原始的 关系型数据库 的流程
-        // 扣库存
-//         int count = seckillVouchersMapper.stockDecrease(seckillVouchers.getId());
-//         AssertUtil.isTrue(count == 0, "该券已经卖完了");
+        // 本地令牌不足时直接拒绝，令牌数按当前剩余库存初始化
+        if (!seckillLocalGate.tryAcquire(voucherId, () -> findRemainingStock(voucherId))) {
+            return ResultInfoUtil.buildError(0, SeckillLocalGate.SOLD_OUT_MESSAGE, path);
+        }
+        if (seckillQueueConfig.isEnabled()) {
+            // 排队模式：入队后立即返回排队中和随机的排队凭证，由 SeckillWaitingRoom 按顺序处理
+            String ticket = IdUtil.fastSimpleUUID();
+            boolean queued;
+            try {
+                queued = seckillWaitingRoom.offer(voucherId, dinerId, ticket, path, () -> {
+                    String rejected = seckillLocalGate.rejectReason(voucherId);
+                    if (rejected != null) {
+                        seckillLocalGate.release(voucherId);
+                        return ResultInfoUtil.buildError(0, rejected, path);
+                    }
+                    return admit(voucherMeta, dinerId, orderNo, path);
+                });
+            } catch (RuntimeException e) {
+                // 写入排队中标记失败，没有入队
+                seckillLocalGate.release(voucherId);
+                throw e;
+            }
+            if (!queued) {
+                seckillLocalGate.release(voucherId);
+                return ResultInfoUtil.buildError(0, SeckillWaitingRoom.FULL_MESSAGE, path);
+            }
+            return ResultInfoUtil.build(SeckillWaitingRoom.QUEUED_CODE, SeckillWaitingRoom.QUEUED_MESSAGE, path,
+                    ticket);
+        }
+        return admit(voucherMeta, dinerId, orderNo, path);
+    }
 
+    /**
+     * 执行抢购
+     *
+     * @param voucherMeta
+     * @param dinerId
+     * @param orderNo
+     * @param path
+     * @return
+     */
+    private ResultInfo admit(SeckillVoucherCache.Meta voucherMeta, Integer dinerId, String orderNo, String path) {
+        Integer voucherId = voucherMeta.getVoucherId();
+        // 判断是否已抢购、扣库存、写入订单 Stream，已抢购用户集合在抢购结束后过期
+        Long result;
+        try {
+            result = seckill(voucherMeta, dinerId, orderNo);
+            if (result != null && (result == SECKILL_STALE
+                    || (result == SECKILL_NOT_FOUND && voucherMeta.getBuckets() > 1))) {
+                // 本地缓存的分桶数与 Redis 不一致（重新添加活动的通知丢失），重新读取后再试一次
+                seckillVoucherCache.invalidate(voucherId);
+                SeckillVoucherCache.Meta fresh = seckillVoucherCache.get(voucherId);
+                result = fresh == null ? null : seckill(fresh, dinerId, orderNo);
+                if (result != null && result == SECKILL_STALE) {
+                    result = SECKILL_NOT_FOUND;
+                }
+            }
+        } catch (RuntimeException e) {
+            // 访问 Redis 失败，归还本地令牌
+            seckillLocalGate.release(voucherId);
+            throw e;
+        }
+        if (result == null || result == SECKILL_NOT_FOUND || result == SECKILL_BOUGHT) {
+            // 没有消耗库存，归还本地令牌
+            seckillLocalGate.release(voucherId);
+        }
+        AssertUtil.isTrue(result == null || result == SECKILL_NOT_FOUND, "该代金券并未有抢购活动");
+        AssertUtil.isTrue(result == SECKILL_BOUGHT, "该用户已抢到该代金券，无需再抢");
+        if (result == SECKILL_SOLD_OUT) {
+            seckillLocalGate.markSoldOut(voucherId);
+            return ResultInfoUtil.buildError(0, SeckillLocalGate.SOLD_OUT_MESSAGE, path);
+        }
+        return ResultInfoUtil.buildSuccess(path, "抢购成功");
+    }
 
-        // 使用 Redis 锁一个账号只能购买一次
-        String lockName = RedisKeyConstant.lock_key.getKey()
-                + dinerInfo.getId() + ":" + voucherId;
-        //超时时间
-        long expireTime = seckillVouchers.getEndTime().getTime() - now.getTime();
+    /**
+     * 按分桶数选择抢购方式
+     *
+     * @param voucherMeta
+     * @param dinerId
+     * @param orderNo
+     * @return 秒杀脚本返回值
+     */
+    private Long seckill(SeckillVoucherCache.Meta voucherMeta, Integer dinerId, String orderNo) {
+        Integer voucherId = voucherMeta.getVoucherId();
+        return voucherMeta.getBuckets() > 1
+                ? seckillFromBuckets(voucherMeta, dinerId, orderNo)
+                : executeSeckill(RedisKeyConstant.seckill_vouchers.getKey() + voucherId,
+                RedisKeyConstant.seckill_buyers.getKey() + voucherId,
+                RedisKeyConstant.seckill_orders.getKey(), voucherMeta, dinerId, orderNo, false);
+    }
 
-        // 自定义 Redis 分布式锁
-        //String lockKey = redisLock.tryLock(lockName, expireTime);
+    /**
+     * 查询排队的抢购结果
+     *
+     * @param ticket      排队凭证
+     * @param accessToken 登录token
+     * @param path
+     * @return
+     */
+    public ResultInfo findSeckillResult(String ticket, String accessToken, String path) {
+        AssertUtil.isNotEmpty(ticket, "请输入排队凭证");
+        AssertUtil.isNotEmpty(accessToken, "请登录");
+        // 只能查询自己的抢购结果
+        SignInDinerInfo dinerInfo = signInDinerInfoResolver.resolve(accessToken);
+        return seckillWaitingRoom.result(ticket, dinerInfo.getId(), path);
+    }
 
-        // Redisson 分布式锁
-        RLock lock = redissonClient.getLock(lockName);
-        //下单
-        try {
-            // 不为空意味着拿到锁了，执行下单
-            // 自定义 Redis 分布式锁处理
-            //if (StrUtil.isNotBlank(lockKey)) {
-            // Redisson 分布式锁处理
-            boolean isLocked = lock.tryLock(expireTime, TimeUnit.MILLISECONDS);
-            if (isLocked) {
-                VoucherOrders voucherOrders = new VoucherOrders();
-                voucherOrders.setFkDinerId(dinerInfo.getId());
-                // Redis 中不需要维护外键信息
-       //       voucherOrders.setFkSeckillId(seckillVouchers.getId());
-                voucherOrders.setFkVoucherId(seckillVouchers.getFkVoucherId());
-                String orderNo = IdUtil.getSnowflake(1, 1).nextIdStr();
-                voucherOrders.setOrderNo(orderNo);
-                voucherOrders.setOrderType(1);
-                voucherOrders.setStatus(0);
-                long count = voucherOrdersMapper.save(voucherOrders);
-                AssertUtil.isTrue(count == 0, "用户抢购失败");
-
-                // 采用 Redis 实现
-//            count = redisTemplate.opsForHash().increment(key, "amount", -1);
-//            AssertUtil.isTrue(count < 0 ,"该代金券卖完了");
-                // 采用 Redis + Lua 解决问题
-                // 扣库存
-                List<String> keys = new ArrayList<>();
-                keys.add(key);
-                keys.add("amount");
-                Long amount = (Long) redisTemplate.execute(defaultRedisScript, keys);
-                AssertUtil.isTrue(amount == null || amount < 1, "该券已经卖完了");
-            }
-        } catch (Exception e) {
-            // 手动回滚事务
-            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
-            // 自定义 Redis 解锁
-            // redisLock.unlock(lockName, lockKey);
-
-            // Redisson 解锁
-            lock.unlock();
-            if (e instanceof ParameterException) {
-                return ResultInfoUtil.buildError(0, "该券已经卖完了", path);
+    /**
+     * 分桶抢购：在食客所在分桶判断是否已抢购并扣库存，该分桶卖完时预占后依次尝试其它分桶，都卖完时取消预占
+     *
+     * @param voucherMeta
+     * @param dinerId
+     * @param orderNo
+     * @return 秒杀脚本返回值
+     */
+    private Long seckillFromBuckets(SeckillVoucherCache.Meta voucherMeta, Integer dinerId, String orderNo) {
+        Integer voucherId = voucherMeta.getVoucherId();
+        int buckets = voucherMeta.getBuckets();
+        int home = seckillStockBuckets.bucketOf(dinerId, buckets);
+        String buyersKey = seckillStockBuckets.buyersKey(voucherId, home);
+        Long result = executeSeckill(seckillStockBuckets.stockKey(voucherId, home), buyersKey,
+                seckillStockBuckets.ordersKey(home), voucherMeta, dinerId, orderNo, true);
+        if (result == null || result != SECKILL_RESERVED) {
+            return result;
+        }
+        RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+        for (int i = 1; i < buckets; i++) {
+            int bucket = (home + i) % buckets;
+            Long fallback = (Long) redisTemplate.execute(seckillFallbackScript, serializer, serializer,
+                    Arrays.asList(seckillStockBuckets.stockKey(voucherId, bucket), seckillStockBuckets.ordersKey(bucket)),
+                    String.valueOf(dinerId), orderNo, String.valueOf(voucherId));
+            if (fallback != null && fallback == SECKILL_SUCCESS) {
+                return SECKILL_SUCCESS;
             }
         }
-        return ResultInfoUtil.buildSuccess(path, "抢购成功");
+        // 所有分桶都已卖完，取消预占
+        redisTemplate.opsForSet().remove(buyersKey, dinerId);
+        return SECKILL_SOLD_OUT;
     }
+
+    /**
+     * 执行秒杀脚本
+     *
+     * @param stockKey    库存 key
+     * @param buyersKey   已抢购用户集合 key
+     * @param ordersKey   订单 Stream key
+     * @param voucherMeta
+     * @param dinerId
+     * @param orderNo
+     * @param reserve     卖完时是否预占
+     * @return 秒杀脚本返回值
+     */
+    private Long executeSeckill(String stockKey, String buyersKey, String ordersKey,
+                                SeckillVoucherCache.Meta voucherMeta, Integer dinerId, String orderNo,
+                                boolean reserve) {
+        RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+        return (Long) redisTemplate.execute(seckillScript, serializer, serializer,
+                Arrays.asList(stockKey, buyersKey, ordersKey),
+                String.valueOf(dinerId), orderNo, String.valueOf(voucherMeta.getVoucherId()),
+                String.valueOf(voucherMeta.getEndTime()), reserve ? "1" : "0");
+    }
+
+    /**
+     * 查询剩余库存，分桶时合并各分桶
+     *
+     * @param voucherId
+     * @return
+     */
+    public int findRemainingStock(Integer voucherId) {
+        AssertUtil.isTrue(voucherId == null || voucherId < 0, "请选择代金券");
+        SeckillVoucherCache.Meta voucherMeta = seckillVoucherCache.get(voucherId);
+        AssertUtil.isTrue(voucherMeta == null, "该代金券并未有抢购活动");
+        if (voucherMeta.getBuckets() > 1) {
+            return seckillStockBuckets.remaining(voucherId, voucherMeta.getBuckets());
+        }
+        Object amount = redisTemplate.opsForHash().get(RedisKeyConstant.seckill_vouchers.getKey() + voucherId, "amount");
+        return amount instanceof Number ? Math.max(0, ((Number) amount).intValue()) : 0;
+    }
+
     /**
      * 添加需要抢购的代金券
      *
@@ -178,27 +319,76 @@ public class SeckillService {
         AssertUtil.isTrue(now.after(seckillVouchers.getEndTime()), "结束时间不能早于当前时间");
         AssertUtil.isTrue(seckillVouchers.getStartTime().after(seckillVouchers.getEndTime()), "开始时间不能晚于结束时间");
 
-        // 注释原始的走 关系型数据库 的流程
-        // 验证数据库中是否已经存在该券的秒杀活动
-//         SeckillVouchers seckillVouchersFromDb = seckillVouchersMapper.selectVoucher(seckillVouchers.getFkVoucherId());
-//         AssertUtil.isTrue(seckillVouchersFromDb != null, "该券已经拥有了抢购活动");
-        // 插入数据库
-//         seckillVouchersMapper.save(seckillVouchers);
+        // 同一张券的添加请求跨实例互斥，避免同时通过“已有抢购活动”的检查后互相覆盖库存
+        FencedRedisLock.Lease lease = fencedRedisLock.tryLock("seckill:add:" + seckillVouchers.getFkVoucherId());
+        AssertUtil.isTrue(lease == null, "该券正在添加抢购活动，请稍后再试");
+        try {
+            // 注释原始的走 关系型数据库 的流程
+            // 验证数据库中是否已经存在该券的秒杀活动
+//             SeckillVouchers seckillVouchersFromDb = seckillVouchersMapper.selectVoucher(seckillVouchers.getFkVoucherId());
+//             AssertUtil.isTrue(seckillVouchersFromDb != null, "该券已经拥有了抢购活动");
+            // 插入数据库，SeckillVoucherPreloader 从数据库预热即将开始的活动
+            seckillVouchersMapper.save(seckillVouchers);
 
-        // 采用 Redis 实现
-        String key = RedisKeyConstant.seckill_vouchers.getKey() +
-                seckillVouchers.getFkVoucherId();
-        // 验证 Redis 中是否已经存在该券的秒杀活动
-        Map<String, Object> map = redisTemplate.opsForHash().entries(key);
-        AssertUtil.isTrue(!map.isEmpty() && (int) map.get("amount") > 0, "该券已经拥有了抢购活动");
+            // 采用 Redis 实现
+            String key = RedisKeyConstant.seckill_vouchers.getKey() +
+                    seckillVouchers.getFkVoucherId();
+            // 验证 Redis 中是否已经存在该券的秒杀活动
+            seckillVoucherCache.invalidate(seckillVouchers.getFkVoucherId());
+            AssertUtil.isTrue(seckillVoucherCache.get(seckillVouchers.getFkVoucherId()) != null
+                    && findRemainingStock(seckillVouchers.getFkVoucherId()) > 0, "该券已经拥有了抢购活动");
 
-        // 插入 Redis
-        seckillVouchers.setIsValid(1);
-        seckillVouchers.setCreateDate(now);
-        seckillVouchers.setUpdateDate(now);
+            // 插入 Redis
+            seckillVouchers.setIsValid(1);
+            seckillVouchers.setCreateDate(now);
+            seckillVouchers.setUpdateDate(now);
 
-        redisTemplate.opsForHash().putAll(key, BeanUtil.beanToMap(seckillVouchers));
+            // 库存分桶，分桶时 amount 保留初始库存，剩余库存在各分桶中；秒杀脚本发现 buckets 大于 1 时不扣减 amount
+            int buckets = Math.min(seckillStockBuckets.buckets(), seckillVouchers.getAmount());
+            Object previous = redisTemplate.opsForHash().get(key, "buckets");
+            int previousBuckets = previous instanceof Number ? ((Number) previous).intValue() : 1;
+            Map<String, Object> map = BeanUtil.beanToMap(seckillVouchers);
+            // 写入分桶前确认仍持有锁，写入活动时再由脚本校验 fencing token
+            AssertUtil.isTrue(!lease.isHeld(), "添加抢购活动超时，请重试");
+            if (buckets > 1) {
+                seckillStockBuckets.init(seckillVouchers.getFkVoucherId(), seckillVouchers.getAmount(), buckets);
+                map.put("buckets", buckets);
+            } else {
+                // 之前的活动分桶时，先去掉分桶数，避免其它实例继续从旧分桶抢购
+                redisTemplate.opsForHash().delete(key, "buckets");
+            }
+            // 删除之前的活动多出来的分桶
+            seckillStockBuckets.delete(seckillVouchers.getFkVoucherId(), buckets > 1 ? buckets : 0, previousBuckets);
+            AssertUtil.isTrue(!publish(key, map, lease.getFencingToken()), "该券的抢购活动已被其它请求更新，请刷新后重试");
+            // 清除各实例中该券之前的卖完、结束标记和代金券信息缓存
+            seckillLocalGate.reset(seckillVouchers.getFkVoucherId());
+            seckillVoucherCache.put(seckillVouchers, Math.max(1, buckets));
+        } finally {
+            fencedRedisLock.unlock(lease);
+        }
+
+    }
 
+    /**
+     * 写入抢购活动，fencing token 小于已写入的值时拒绝，持有者停顿丢锁后的写入不会覆盖后来者
+     *
+     * @param key          抢购活动 key
+     * @param map          抢购活动字段
+     * @param fencingToken 添加锁的 fencing token
+     * @return 被拒绝返回 false
+     */
+    private boolean publish(String key, Map<String, Object> map, long fencingToken) {
+        // 字段名、值与 putAll 的序列化方式一致
+        RedisSerializer valueSerializer = redisTemplate.getHashValueSerializer();
+        List<Object> args = new ArrayList<>(map.size() * 2 + 1);
+        args.add(valueSerializer.serialize(fencingToken));
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            args.add(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            args.add(valueSerializer.serialize(entry.getValue()));
+        }
+        Long result = (Long) redisTemplate.execute(seckillPublishScript, RedisSerializer.byteArray(),
+                redisTemplate.getStringSerializer(), Collections.singletonList(key), args.toArray());
+        return result != null && result == 1;
     }
 
-}
\ No newline at end of file
+}
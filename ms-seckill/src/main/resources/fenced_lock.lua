@@ -0,0 +1,14 @@
+-- 加锁并发放 fencing token
+-- KEYS[1] 锁 lockby:{锁名称}
+-- KEYS[2] fencing token 计数器 lockby:{锁名称}:fence
+-- ARGV[1] 持有者标识，每次加锁唯一
+-- ARGV[2] 租期，单位毫秒
+-- 返回 大于 0=加锁成功，值为 fencing token；小于 0=已被其它持有者锁定，值为锁剩余时间的相反数
+if (redis.call('set', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2])) then
+    return redis.call('incr', KEYS[2]);
+end;
+local ttl = redis.call('pttl', KEYS[1]);
+if (ttl < 1) then
+    ttl = 1;
+end;
+return -ttl;
@@ -0,0 +1,9 @@
+-- 续约，只续自己持有的锁
+-- KEYS[1] 锁 lockby:{锁名称}
+-- ARGV[1] 持有者标识
+-- ARGV[2] 租期，单位毫秒
+-- 返回 1=续约成功，0=锁已丢失
+if (redis.call('get', KEYS[1]) == ARGV[1]) then
+    return redis.call('pexpire', KEYS[1], ARGV[2]);
+end;
+return 0;
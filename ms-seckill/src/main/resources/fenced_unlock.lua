@@ -0,0 +1,12 @@
+-- 释放锁并通知等待者，只释放自己持有的锁
+-- KEYS[1] 锁 lockby:{锁名称}
+-- ARGV[1] 持有者标识
+-- ARGV[2] 释放通知频道
+-- ARGV[3] 锁名称
+-- 返回 1=释放成功，0=锁已丢失
+if (redis.call('get', KEYS[1]) == ARGV[1]) then
+    redis.call('del', KEYS[1]);
+    redis.call('publish', ARGV[2], ARGV[3]);
+    return 1;
+end;
+return 0;
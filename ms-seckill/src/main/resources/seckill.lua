@@ -0,0 +1,37 @@
+-- 秒杀下单：校验是否已抢购、扣库存、记录抢购用户、写入订单 Stream 在同一个脚本中完成
+-- KEYS[1] 秒杀代金券 seckill_vouchers:{voucherId}，分桶时为食客所在分桶的库存
+-- KEYS[2] 已抢购用户集合 seckill_buyers:{voucherId}，分桶时为食客所在分桶的集合
+-- KEYS[3] 秒杀订单 Stream seckill:orders，分桶时为食客所在分桶的 Stream
+-- ARGV[1] 食客 ID
+-- ARGV[2] 订单编号
+-- ARGV[3] 代金券 ID
+-- ARGV[4] 抢购结束时间（毫秒级时间戳），已抢购用户集合在此之后过期
+-- ARGV[5] 卖完时是否预占，1=预占，分桶时用于到其它分桶抢购期间防止重复下单
+-- 返回 -1=没有抢购活动，-2=已抢购，-3=已卖完并已预占，-4=活动已分桶，0=已卖完，1=抢购成功
+if (redis.call('hexists', KEYS[1], 'amount') == 0) then
+    return -1;
+end;
+-- 分桶库存中没有 buckets 字段；代金券 hash 中有说明调用方缓存的分桶数已过期，amount 为初始库存，不能扣减
+local buckets = tonumber(redis.call('hget', KEYS[1], 'buckets'));
+if (buckets and buckets > 1) then
+    return -4;
+end;
+if (redis.call('sismember', KEYS[2], ARGV[1]) == 1) then
+    return -2;
+end;
+local stock = tonumber(redis.call('hget', KEYS[1], 'amount'));
+if (stock < 1) then
+    if (ARGV[5] == '1') then
+        redis.call('sadd', KEYS[2], ARGV[1]);
+        redis.call('pexpireat', KEYS[2], ARGV[4]);
+        return -3;
+    end;
+    return 0;
+end;
+redis.call('hincrby', KEYS[1], 'amount', -1);
+redis.call('sadd', KEYS[2], ARGV[1]);
+redis.call('pexpireat', KEYS[2], ARGV[4]);
+-- 不按长度裁剪，避免裁掉还未入库的订单；已确认的订单由 SeckillOrderDispatcher 裁剪
+redis.call('xadd', KEYS[3], '*',
+        'orderNo', ARGV[2], 'dinerId', ARGV[1], 'voucherId', ARGV[3]);
+return 1;
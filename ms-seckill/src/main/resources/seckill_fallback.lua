@@ -0,0 +1,17 @@
+-- 秒杀下单：食客所在分桶卖完后，从其它分桶扣库存并写入订单 Stream
+-- 是否已抢购已在食客所在分桶中判断并预占，这里只扣库存
+-- KEYS[1] 分桶库存 seckill_stock:{b分桶号}:{voucherId}
+-- KEYS[2] 分桶订单 Stream seckill:orders:{b分桶号}
+-- ARGV[1] 食客 ID
+-- ARGV[2] 订单编号
+-- ARGV[3] 代金券 ID
+-- 返回 0=已卖完，1=抢购成功
+local stock = tonumber(redis.call('hget', KEYS[1], 'amount'));
+if (not stock or stock < 1) then
+    return 0;
+end;
+redis.call('hincrby', KEYS[1], 'amount', -1);
+-- 不按长度裁剪，已确认的订单由 SeckillOrderDispatcher 裁剪
+redis.call('xadd', KEYS[2], '*',
+        'orderNo', ARGV[2], 'dinerId', ARGV[1], 'voucherId', ARGV[3]);
+return 1;
@@ -0,0 +1,14 @@
+-- 写入抢购活动，只接受不小于已写入的 fencing token 的写入，持有者停顿丢锁后的写入不会覆盖后来者
+-- KEYS[1] 抢购活动 seckill_vouchers:代金券 ID
+-- ARGV[1] 添加锁的 fencing token
+-- ARGV[2...] 字段、值交替
+-- 返回 1=写入成功，0=已有更晚获得锁的请求写入，本次丢弃
+local fence = tonumber(redis.call('hget', KEYS[1], 'fence'));
+if (fence and fence > tonumber(ARGV[1])) then
+    return 0;
+end;
+redis.call('hset', KEYS[1], 'fence', ARGV[1]);
+for i = 2, #ARGV, 2 do
+    redis.call('hset', KEYS[1], ARGV[i], ARGV[i + 1]);
+end;
+return 1;
@@ -0,0 +1,175 @@
+package com.wangz.component;
+
+import com.wangz.config.SeckillQueueConfig;
+import com.wangz.constant.ApiConstant;
+import com.wangz.model.domain.ResultInfo;
+import com.wangz.utils.ResultInfoUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SeckillWaitingRoomTest {
+
+    private static final String PATH = "/1";
+
+    private SeckillWaitingRoom waitingRoom;
+    private SeckillQueueConfig queueConfig;
+    // 代替 Redis 保存的抢购结果
+    private final Map<Object, Object> results = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        RedisTemplate redisTemplate = mock(RedisTemplate.class);
+        ValueOperations valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        doAnswer(invocation -> results.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(valueOperations).set(any(), any(), anyLong(), any(TimeUnit.class));
+        when(valueOperations.get(any())).thenAnswer(invocation -> results.get(invocation.getArgument(0)));
+        when(redisTemplate.delete(anyString())).thenAnswer(invocation -> results.remove(invocation.getArgument(0)) != null);
+
+        queueConfig = new SeckillQueueConfig();
+        queueConfig.setCapacity(100);
+        queueConfig.setWorkers(2);
+        queueConfig.setDrainBatch(10);
+        waitingRoom = new SeckillWaitingRoom();
+        ReflectionTestUtils.setField(waitingRoom, "seckillQueueConfig", queueConfig);
+        ReflectionTestUtils.setField(waitingRoom, "redisTemplate", redisTemplate);
+        waitingRoom.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        waitingRoom.destroy();
+    }
+
+    // 同一个代金券的请求按入队顺序处理，处理完后移除队列
+    @Test
+    void testFirstComeFirstServed() throws Exception {
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(50);
+        for (int i = 0; i < 50; i++) {
+            int order = i;
+            assertTrue(waitingRoom.offer(1, 1000 + i, "ticket-" + i, PATH, () -> {
+                handled.add(order);
+                done.countDown();
+                return ResultInfoUtil.buildSuccess(PATH, "抢购成功");
+            }));
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, handled.get(i));
+        }
+        awaitResult("ticket-49");
+        assertTrue(awaitLanesEmpty(), "处理完的队列应被移除");
+    }
+
+    // 只有排队的食客本人能查到结果，其他人视为凭证不存在
+    @Test
+    void testResultOnlyVisibleToOwner() throws Exception {
+        assertTrue(waitingRoom.offer(1, 7, "ticket", PATH, () -> ResultInfoUtil.buildSuccess(PATH, "抢购成功")));
+        awaitResult("ticket");
+
+        ResultInfo own = waitingRoom.result("ticket", 7, PATH);
+        assertEquals(ApiConstant.SUCCESS_CODE, own.getCode());
+        assertEquals("抢购成功", own.getData());
+
+        ResultInfo other = waitingRoom.result("ticket", 8, PATH);
+        assertEquals(ApiConstant.ERROR_CODE, other.getCode());
+        assertEquals(SeckillWaitingRoom.NOT_FOUND_MESSAGE, other.getMessage());
+    }
+
+    // 处理前查询到排队中，未知或已过期的凭证返回失败而不是一直排队中
+    @Test
+    void testQueuedUntilHandledAndUnknownTicketNotFound() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(waitingRoom.offer(1, 7, "ticket", PATH, () -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ResultInfoUtil.buildSuccess(PATH, "抢购成功");
+        }));
+        ResultInfo queued = waitingRoom.result("ticket", 7, PATH);
+        assertEquals(SeckillWaitingRoom.QUEUED_CODE, queued.getCode());
+        assertEquals("ticket", queued.getData());
+
+        ResultInfo unknown = waitingRoom.result("unknown", 7, PATH);
+        assertEquals(ApiConstant.ERROR_CODE, unknown.getCode());
+        assertEquals(SeckillWaitingRoom.NOT_FOUND_MESSAGE, unknown.getMessage());
+
+        release.countDown();
+        awaitResult("ticket");
+        assertEquals(ApiConstant.SUCCESS_CODE, waitingRoom.result("ticket", 7, PATH).getCode());
+
+        // 排队中标记过期后查询到的是失败
+        results.remove("seckill:result:ticket");
+        assertEquals(ApiConstant.ERROR_CODE, waitingRoom.result("ticket", 7, PATH).getCode());
+    }
+
+    // 队列满时拒绝入队
+    @Test
+    void testRejectWhenFull() throws Exception {
+        queueConfig.setCapacity(2);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // 第一个请求出队后阻塞，后续请求留在队列中
+        assertTrue(waitingRoom.offer(1, 1, "ticket-0", PATH, () -> {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ResultInfoUtil.buildSuccess(PATH, "抢购成功");
+        }));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertTrue(waitingRoom.offer(1, 2, "ticket-1", PATH, () -> ResultInfoUtil.buildSuccess(PATH)));
+        assertTrue(waitingRoom.offer(1, 3, "ticket-2", PATH, () -> ResultInfoUtil.buildSuccess(PATH)));
+        assertFalse(waitingRoom.offer(1, 4, "ticket-3", PATH, () -> ResultInfoUtil.buildSuccess(PATH)));
+        assertFalse(results.containsKey("seckill:result:ticket-3"), "没有入队的请求不保留排队中标记");
+        release.countDown();
+        awaitResult("ticket-2");
+    }
+
+    // 等待排队中标记被处理结果替换
+    private void awaitResult(String ticket) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (Integer.valueOf(SeckillWaitingRoom.QUEUED_CODE).equals(
+                ((Map<?, ?>) results.get("seckill:result:" + ticket)).get("code"))) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待抢购结果超时：" + ticket);
+            Thread.sleep(10);
+        }
+    }
+
+    private boolean awaitLanesEmpty() throws InterruptedException {
+        Map<?, ?> lanes = (Map<?, ?>) ReflectionTestUtils.getField(waitingRoom, "lanes");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!lanes.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return lanes.isEmpty();
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.wangz.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.mock;
+
+public class FencedRedisLockTest {
+
+    // 最短租期，续约间隔为 1 秒
+    private static final long LEASE_MILLIS = 3000;
+
+    private FencedRedisLock lock;
+    // 模拟 Redis 中的锁，key：锁 key value：持有者标识
+    private final Map<String, String> owners = new ConcurrentHashMap<>();
+    // 模拟 fencing token 计数器
+    private final AtomicLong fence = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        // 按脚本模拟加锁、续约、释放，释放时直接投递释放通知
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class, invocation -> {
+            if (!"execute".equals(invocation.getMethod().getName())) {
+                return RETURNS_DEFAULTS.answer(invocation);
+            }
+            Object script = invocation.getArgument(0);
+            String key = ((List<String>) invocation.getArgument(1)).get(0);
+            String owner = invocation.getArgument(2);
+            if (script == ReflectionTestUtils.getField(lock, "lockScript")) {
+                return owners.putIfAbsent(key, owner) == null ? fence.incrementAndGet() : -LEASE_MILLIS;
+            }
+            if (script == ReflectionTestUtils.getField(lock, "renewScript")) {
+                return owner.equals(owners.get(key)) ? 1L : 0L;
+            }
+            if (!owners.remove(key, owner)) {
+                return 0L;
+            }
+            String lockName = invocation.getArgument(4);
+            lock.onMessage(new DefaultMessage(invocation.<String>getArgument(3).getBytes(StandardCharsets.UTF_8),
+                    lockName.getBytes(StandardCharsets.UTF_8)), null);
+            return 1L;
+        });
+        lock = new FencedRedisLock(redisTemplate, mock(RedisMessageListenerContainer.class), LEASE_MILLIS);
+        lock.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        lock.stop();
+    }
+
+    // 等待者收到释放通知后立即加锁，不等锁到期，fencing token 递增
+    @Test
+    void testTryLockAsyncWakesUpOnRelease() throws Exception {
+        FencedRedisLock.Lease holder = lock.tryLock("voucher");
+        assertNotNull(holder);
+        assertNull(lock.tryLock("voucher"));
+
+        CompletableFuture<FencedRedisLock.Lease> waiting = lock.tryLockAsync("voucher", 10000);
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertFalse(waiting.isDone());
+
+        long released = System.currentTimeMillis();
+        assertTrue(lock.unlock(holder));
+        FencedRedisLock.Lease next = waiting.get(1, TimeUnit.SECONDS);
+        assertNotNull(next);
+        assertTrue(System.currentTimeMillis() - released < LEASE_MILLIS, "应由释放通知唤醒");
+        assertTrue(next.getFencingToken() > holder.getFencingToken());
+        assertTrue(lock.unlock(next));
+    }
+
+    // 等待超时完成为 null
+    @Test
+    void testTryLockAsyncTimesOut() throws Exception {
+        FencedRedisLock.Lease holder = lock.tryLock("voucher");
+        assertNotNull(holder);
+
+        long start = System.currentTimeMillis();
+        FencedRedisLock.Lease lease = lock.tryLockAsync("voucher", 200).get(2, TimeUnit.SECONDS);
+        assertNull(lease);
+        assertTrue(System.currentTimeMillis() - start >= 200);
+        assertTrue(holder.isHeld());
+        assertTrue(lock.unlock(holder));
+    }
+
+    // 续约发现锁已被其它持有者占用时标记为丢失，释放时不删除别人的锁
+    @Test
+    void testLostLeaseDetectedOnRenewal() throws Exception {
+        FencedRedisLock.Lease lease = lock.tryLock("voucher");
+        assertNotNull(lease);
+        assertTrue(lease.isHeld());
+
+        // 锁过期后被其它持有者拿走
+        owners.replaceAll((key, owner) -> "other");
+        // 在租约本地到期前由续约发现，而不是等到期
+        long deadline = System.currentTimeMillis() + LEASE_MILLIS * 2 / 3;
+        while (lease.isHeld() && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        assertFalse(lease.isHeld());
+        assertFalse(lock.unlock(lease));
+        assertTrue(owners.containsValue("other"));
+    }
+
+}